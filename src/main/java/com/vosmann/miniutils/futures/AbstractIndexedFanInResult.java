@@ -0,0 +1,100 @@
+package com.vosmann.miniutils.futures;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Results of a FanIn aligned with the positions of its futures: slot i holds the outcome of the i-th future. A slot
+ * is either successful, failed, or empty if its future had not completed when the FanIn did, e.g. because a
+ * completion policy was met first. Subclasses store the successful values.
+ */
+public abstract class AbstractIndexedFanInResult {
+
+    private final int size;
+    private final BitSet successful;
+    private final Throwable[] throwables; // Null if no slot failed.
+
+    AbstractIndexedFanInResult(final ResultSlots<?> slots) {
+        size = slots.size();
+        successful = new BitSet(size);
+        Throwable[] failed = null;
+        for (int i = 0; i < size; ++i) {
+            if (slots.isSuccessful(i)) {
+                successful.set(i);
+            } else {
+                final Throwable throwable = slots.getThrowable(i);
+                if (throwable != null) {
+                    if (failed == null) {
+                        failed = new Throwable[size];
+                    }
+                    failed[i] = throwable;
+                }
+            }
+        }
+        throwables = failed;
+    }
+
+    /**
+     * @return The number of slots, equal to the number of futures in the FanIn.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isSuccessful(final int index) {
+        checkElementIndex(index, size);
+        return successful.get(index);
+    }
+
+    public boolean isFailed(final int index) {
+        return getThrowable(index) != null;
+    }
+
+    public int getSuccessfulCount() {
+        return successful.cardinality();
+    }
+
+    /**
+     * @return The Throwable of the index-th future, or null if it did not fail.
+     */
+    public Throwable getThrowable(final int index) {
+        checkElementIndex(index, size);
+        return throwables == null ? null : throwables[index];
+    }
+
+    /**
+     * @return The Throwables of all failed futures, in the order of the futures.
+     */
+    public List<Throwable> getThrowables() {
+        final List<Throwable> failed = new ArrayList<>();
+        if (throwables != null) {
+            for (final Throwable throwable : throwables) {
+                if (throwable != null) {
+                    failed.add(throwable);
+                }
+            }
+        }
+        return unmodifiableList(failed);
+    }
+
+    public boolean hasThrowables() {
+        return throwables != null;
+    }
+
+    /**
+     * @return Indices of the successful slots, in ascending order.
+     */
+    int[] successfulIndices() {
+        return successful.stream().toArray();
+    }
+
+    void checkSuccessful(final int index) {
+        checkState(isSuccessful(index), "Future %s did not complete successfully.", index);
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Limits how many tasks run at the same time, and finds the limit by itself with additive increase and multiplicative
+ * decrease (AIMD): every successful call raises the limit by about one per limit's worth of calls, and a congestion
+ * signal multiplies it by the backoff ratio. A congestion signal is a failure that the throttling predicate accepts,
+ * e.g. S3's 503 SlowDown, or a call slower than the latency tolerance times the baseline latency, which is the lowest
+ * latency seen since the start of the previous window of calls.
+ * <p>
+ * Only calls started after the last decrease can decrease the limit again, so a burst of signals from calls that were
+ * all in flight at the same time backs off once. Tasks over the limit wait in a queue; starting them is serialized by
+ * a work-in-progress counter, like in BoundedLauncher, so synchronously completing tasks don't recurse.
+ */
+@ThreadSafe
+public class AdaptiveConcurrencyLimiter {
+
+    private static final int WINDOW_SIZE = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final Predicate<? super Throwable> isThrottling;
+
+    private final AtomicInteger workInProgress = new AtomicInteger();
+
+    // Guarded by this.
+    private final Queue<Runnable> waiting = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos = System.nanoTime();
+    private long baselineNanos = Long.MAX_VALUE;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+
+    private AdaptiveConcurrencyLimiter(final Builder builder) {
+        checkState(builder.minLimit <= builder.initialLimit && builder.initialLimit <= builder.maxLimit,
+                   "Initial limit must be between the minimum and maximum limits.");
+        minLimit = builder.minLimit;
+        maxLimit = builder.maxLimit;
+        backoffRatio = builder.backoffRatio;
+        latencyTolerance = builder.latencyTolerance;
+        isThrottling = builder.isThrottling;
+        limit = builder.initialLimit;
+    }
+
+    public static final class Builder {
+        private int initialLimit = 10;
+        private int minLimit = 1;
+        private int maxLimit = 1000;
+        private double backoffRatio = 0.9;
+        private double latencyTolerance = 2;
+        private Predicate<? super Throwable> isThrottling = throwable -> false;
+
+        public Builder initialLimit(final int initialLimit) {
+            checkArgument(initialLimit > 0, "Initial limit must be positive.");
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public Builder limits(final int minLimit, final int maxLimit) {
+            checkArgument(0 < minLimit && minLimit <= maxLimit, "Limits must be positive and min <= max.");
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * @param backoffRatio What the limit is multiplied by on a congestion signal. 0.9 by default.
+         */
+        public Builder backoffRatio(final double backoffRatio) {
+            checkArgument(0 < backoffRatio && backoffRatio < 1, "Backoff ratio must be in (0, 1).");
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * @param latencyTolerance How many times slower than the baseline a call may be before it counts as a
+         *                         congestion signal. 2 by default.
+         */
+        public Builder latencyTolerance(final double latencyTolerance) {
+            checkArgument(latencyTolerance > 1, "Latency tolerance must be greater than 1.");
+            this.latencyTolerance = latencyTolerance;
+            return this;
+        }
+
+        /**
+         * @param isThrottling Accepts failures that mean the backend is overloaded. Gets unwrapped Throwables. By
+         *                     default, no failure is a congestion signal.
+         */
+        public Builder throttling(final Predicate<? super Throwable> isThrottling) {
+            checkNotNull(isThrottling, "Throttling predicate is null.");
+            this.isThrottling = isThrottling;
+            return this;
+        }
+
+        public AdaptiveConcurrencyLimiter build() {
+            return new AdaptiveConcurrencyLimiter(this);
+        }
+    }
+
+    /**
+     * Makes a task wait for room under the limit before it starts, e.g. to find the right concurrency for
+     * FanIn.bounded: {@code FanIn.bounded(tasks.map(limiter::wrap), maxLimit)}.
+     */
+    public <T> Supplier<CompletableFuture<T>> wrap(final Supplier<CompletableFuture<T>> task) {
+        checkNotNull(task, "Task is null.");
+        return () -> submit(task);
+    }
+
+    /**
+     * @return A future of the task's result. The task is started once there is room under the limit.
+     */
+    public <T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> task) {
+        checkNotNull(task, "Task is null.");
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        synchronized (this) {
+            waiting.add(() -> run(task, result));
+        }
+        drain();
+        return result;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    private <T> void run(final Supplier<CompletableFuture<T>> task, final CompletableFuture<T> result) {
+        final long startNanos = System.nanoTime();
+        Futures.start(task).whenComplete((value, throwable) -> {
+            onComplete(startNanos, System.nanoTime(), throwable);
+            drain();
+            if (throwable == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(throwable);
+            }
+        });
+    }
+
+    private synchronized void onComplete(final long startNanos, final long endNanos, final Throwable throwable) {
+        --inFlight;
+        final long latencyNanos = endNanos - startNanos;
+        final boolean congested = throwable != null
+                ? isThrottling.test(Futures.unwrap(throwable))
+                : baselineNanos != Long.MAX_VALUE && latencyNanos > latencyTolerance * baselineNanos;
+        if (congested) {
+            if (startNanos >= lastDecreaseNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecreaseNanos = endNanos;
+            }
+        } else if (throwable == null) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        if (throwable == null) {
+            recordLatency(latencyNanos);
+        }
+    }
+
+    private void recordLatency(final long latencyNanos) {
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+        baselineNanos = Math.min(baselineNanos, latencyNanos);
+        if (++windowSamples == WINDOW_SIZE) {
+            baselineNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+
+    private void drain() {
+        if (workInProgress.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Runnable next;
+            while ((next = pollStartable()) != null) {
+                next.run();
+            }
+        } while (workInProgress.decrementAndGet() != 0);
+    }
+
+    private synchronized Runnable pollStartable() {
+        if (inFlight >= (int) limit || waiting.isEmpty()) {
+            return null;
+        }
+        ++inFlight;
+        return waiting.poll();
+    }
+
+}
@@ -0,0 +1,251 @@
+package com.vosmann.miniutils.futures;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Cache of asynchronously loaded values. Concurrent lookups of the same key share one in-flight load, so a popular
+ * key is loaded once no matter how many threads ask for it at the same time.
+ * <p>
+ * Failed loads are dropped, so the next lookup loads again, unless a negative TTL is set. Entries can be bounded by
+ * count or by weight; eviction is least-recently-used within each of the backing Guava cache's segments. With
+ * refreshAfterWrite, a lookup of an old entry still gets the old value right away but triggers a reload in the
+ * background, which replaces the entry once it succeeds.
+ */
+@ThreadSafe
+public class AsyncCache<K, V> {
+
+    private final Function<? super K, CompletableFuture<V>> loader;
+    private final Ticker ticker;
+    private final long expireAfterWriteNanos;
+    private final long refreshAfterWriteNanos;
+    private final long negativeTtlNanos;
+    private final Cache<K, Entry<V>> cache;
+
+    private AsyncCache(final Builder<K, V> builder) {
+        checkNotNull(builder.loader, "Loader is not set.");
+        checkState(builder.maximumSize < 0 || builder.weigher == null, "Can't bound by both size and weight.");
+        loader = builder.loader;
+        ticker = builder.ticker;
+        expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        refreshAfterWriteNanos = builder.refreshAfterWriteNanos;
+        negativeTtlNanos = builder.negativeTtlNanos;
+
+        final CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().ticker(ticker);
+        if (builder.maximumSize >= 0) {
+            cacheBuilder.maximumSize(builder.maximumSize);
+        }
+        if (builder.weigher != null) {
+            final Weigher<? super K, ? super V> weigher = builder.weigher;
+            cacheBuilder.maximumWeight(builder.maximumWeight)
+                        .weigher((K key, Entry<V> entry) -> entry.isLoaded() ? weigher.weigh(key, entry.value()) : 1);
+        }
+        if (expireAfterWriteNanos < Long.MAX_VALUE) {
+            cacheBuilder.expireAfterWrite(Math.max(expireAfterWriteNanos, negativeTtlNanos), TimeUnit.NANOSECONDS);
+        }
+        cache = cacheBuilder.build();
+    }
+
+    public static final class Builder<K, V> {
+        private Function<? super K, CompletableFuture<V>> loader;
+        private Ticker ticker = Ticker.systemTicker();
+        private long maximumSize = -1;
+        private long maximumWeight = -1;
+        private Weigher<? super K, ? super V> weigher;
+        private long expireAfterWriteNanos = Long.MAX_VALUE;
+        private long refreshAfterWriteNanos = Long.MAX_VALUE;
+        private long negativeTtlNanos = 0;
+
+        /**
+         * @param loader Starts loading the value of a key. Should return quickly, without blocking.
+         */
+        public Builder<K, V> loader(final Function<? super K, CompletableFuture<V>> loader) {
+            checkNotNull(loader, "Loader is null.");
+            this.loader = loader;
+            return this;
+        }
+
+        public Builder<K, V> maximumSize(final long maximumSize) {
+            checkArgument(maximumSize >= 0, "Maximum size can't be negative.");
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * @param weigher Weighs loaded values. Entries that are still loading weigh 1.
+         */
+        public Builder<K, V> maximumWeight(final long maximumWeight, final Weigher<? super K, ? super V> weigher) {
+            checkArgument(maximumWeight >= 0, "Maximum weight can't be negative.");
+            checkNotNull(weigher, "Weigher is null.");
+            this.maximumWeight = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * @param duration How long a loaded value is served before it is loaded again. Forever by default.
+         */
+        public Builder<K, V> expireAfterWrite(final long duration, final TimeUnit unit) {
+            this.expireAfterWriteNanos = toPositiveNanos(duration, unit);
+            return this;
+        }
+
+        /**
+         * @param duration Age after which a lookup triggers a background reload. Never by default.
+         */
+        public Builder<K, V> refreshAfterWrite(final long duration, final TimeUnit unit) {
+            this.refreshAfterWriteNanos = toPositiveNanos(duration, unit);
+            return this;
+        }
+
+        /**
+         * @param duration How long a failed load is served before the key is loaded again. Not at all by default.
+         */
+        public Builder<K, V> negativeTtl(final long duration, final TimeUnit unit) {
+            this.negativeTtlNanos = toPositiveNanos(duration, unit);
+            return this;
+        }
+
+        public Builder<K, V> ticker(final Ticker ticker) {
+            checkNotNull(ticker, "Ticker is null.");
+            this.ticker = ticker;
+            return this;
+        }
+
+        public AsyncCache<K, V> build() {
+            return new AsyncCache<>(this);
+        }
+
+        private static long toPositiveNanos(final long duration, final TimeUnit unit) {
+            checkArgument(duration > 0, "Duration must be positive.");
+            checkNotNull(unit, "Unit is null.");
+            return unit.toNanos(duration);
+        }
+    }
+
+    /**
+     * @return A future of the key's value: the cached one, the one being loaded, or a newly started load. Each call
+     * gets its own future, so cancelling it doesn't cancel the load that other callers are waiting for.
+     */
+    public CompletableFuture<V> get(final K key) {
+        checkNotNull(key, "Key is null.");
+        final Entry<V> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            if (!isExpired(cached)) {
+                refreshIfOld(key, cached);
+                return cached.future.thenApply(Function.identity());
+            }
+            cache.asMap().remove(key, cached);
+        }
+
+        final AtomicReference<Entry<V>> started = new AtomicReference<>();
+        final Entry<V> entry;
+        try {
+            entry = cache.get(key, () -> {
+                started.set(new Entry<>(Futures.start(() -> loader.apply(key)), ticker.read(), false, false));
+                return started.get();
+            });
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException("Starting a load can't fail.", e);
+        }
+        if (entry == started.get()) {
+            // Only now is the entry in the cache, where a load that has already completed can replace it.
+            entry.future.whenComplete((value, throwable) -> onLoaded(key, entry, throwable));
+        }
+        return entry.future.thenApply(Function.identity());
+    }
+
+    public void invalidate(final K key) {
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return The approximate number of entries, including ones that are still loading.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    private void onLoaded(final K key, final Entry<V> loading, final Throwable throwable) {
+        if (throwable == null) {
+            cache.asMap().replace(key, loading, new Entry<>(loading.future, ticker.read(), false, true));
+        } else if (negativeTtlNanos > 0) {
+            cache.asMap().replace(key, loading, new Entry<>(loading.future, ticker.read(), true, true));
+        } else {
+            cache.asMap().remove(key, loading);
+        }
+    }
+
+    private boolean isExpired(final Entry<V> entry) {
+        final long ttlNanos = entry.failed ? negativeTtlNanos : expireAfterWriteNanos;
+        return entry.isSettled() && ticker.read() - entry.writeNanos >= ttlNanos;
+    }
+
+    private void refreshIfOld(final K key, final Entry<V> entry) {
+        if (refreshAfterWriteNanos == Long.MAX_VALUE || entry.failed || !entry.isSettled()
+                || ticker.read() - entry.writeNanos < refreshAfterWriteNanos
+                || !entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Futures.start(() -> loader.apply(key)).whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                final Entry<V> refreshed = new Entry<>(completedFuture(value), ticker.read(), false, true);
+                cache.asMap().replace(key, entry, refreshed);
+            } else {
+                entry.refreshing.set(false); // Keep serving the old value; a later lookup tries again.
+            }
+        });
+    }
+
+    /**
+     * Either still loading, or settled once its load has completed and its write time says when.
+     */
+    private static final class Entry<V> {
+
+        private final CompletableFuture<V> future;
+        private final long writeNanos;
+        private final boolean failed;
+        private final boolean settled;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(final CompletableFuture<V> future, final long writeNanos, final boolean failed,
+                      final boolean settled) {
+            this.future = future;
+            this.writeNanos = writeNanos;
+            this.failed = failed;
+            this.settled = settled;
+        }
+
+        private boolean isSettled() {
+            return settled;
+        }
+
+        private boolean isLoaded() {
+            return settled && !failed;
+        }
+
+        private V value() {
+            return future.join();
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Token bucket that hands out permits as futures instead of blocking: a permit that is available right away is an
+ * already completed future, and one that is not is completed by a timer on a shared scheduler.
+ * <p>
+ * Permits are reserved with a single compare-and-set on the time at which the next permit is free, so no lock is
+ * taken. Up to burst permits are available at once after the limiter has been idle. A permit whose future is
+ * cancelled is still used up.
+ */
+@ThreadSafe
+public final class AsyncRateLimiter {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong nextFreeNanos;
+
+    /**
+     * @param permits Permits handed out per unit of time, e.g. 3500 per second.
+     * @param unit    Unit of time.
+     * @param burst   How many permits can be handed out at once after the limiter has been idle.
+     */
+    public static AsyncRateLimiter create(final double permits, final TimeUnit unit, final int burst) {
+        checkArgument(permits > 0, "Permits must be positive.");
+        checkNotNull(unit, "Unit is null.");
+        checkArgument(burst > 0, "Burst must be positive.");
+        final long intervalNanos = Math.max(1, (long) (unit.toNanos(1) / permits));
+        return new AsyncRateLimiter(intervalNanos, burst);
+    }
+
+    private AsyncRateLimiter(final long intervalNanos, final int burst) {
+        this.intervalNanos = intervalNanos;
+        this.burstNanos = (burst - 1) * intervalNanos;
+        this.nextFreeNanos = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    /**
+     * @return A future that completes once a permit is available.
+     */
+    public CompletableFuture<Void> acquire() {
+        final long waitNanos = reserve(System.nanoTime());
+        if (waitNanos <= 0) {
+            return completedFuture(null);
+        }
+        final CompletableFuture<Void> permit = new CompletableFuture<>();
+        Futures.SCHEDULER.schedule(() -> permit.complete(null), waitNanos, NANOSECONDS);
+        return permit;
+    }
+
+    /**
+     * Makes a task wait for a permit before it starts, e.g. to rate-limit FanIn.bounded:
+     * {@code FanIn.bounded(tasks.map(limiter::wrap), maxInFlight)}.
+     */
+    public <T> Supplier<CompletableFuture<T>> wrap(final Supplier<CompletableFuture<T>> task) {
+        checkNotNull(task, "Task is null.");
+        return () -> acquire().thenCompose(permit -> Futures.start(task));
+    }
+
+    /**
+     * @return How long to wait for the reserved permit; zero or negative if it is available now.
+     */
+    private long reserve(final long nowNanos) {
+        while (true) {
+            final long nextFree = nextFreeNanos.get();
+            final long granted = Math.max(nextFree, nowNanos - burstNanos);
+            if (nextFreeNanos.compareAndSet(nextFree, granted + intervalNanos)) {
+                return granted - nowNanos;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.vosmann.miniutils.futures.Futures.SCHEDULER;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Coalesces single-key requests of independent callers into batch requests, for backends that are much cheaper per
+ * key when called in batches. Keys are collected until the batch is full or the oldest key has waited for the max
+ * delay, and then one batch request is made for all of them. The same key requested twice within one batch is sent
+ * only once and both callers get the same future.
+ * <p>
+ * Failures are routed per key: a key missing from the batch response fails only its own future, with a
+ * NoSuchElementException, while a failed batch request fails the futures of all its keys.
+ */
+@ThreadSafe
+public class Batcher<K, V> {
+
+    private final Function<List<K>, CompletableFuture<Map<K, V>>> batchFunction;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>(); // Guarded by this.
+    private ScheduledFuture<?> timer; // Guarded by this.
+
+    private Batcher(final Builder<K, V> builder) {
+        checkNotNull(builder.batchFunction, "Batch function is not set.");
+        batchFunction = builder.batchFunction;
+        maxBatchSize = builder.maxBatchSize;
+        maxDelayNanos = builder.maxDelayNanos;
+    }
+
+    public static final class Builder<K, V> {
+        private Function<List<K>, CompletableFuture<Map<K, V>>> batchFunction;
+        private int maxBatchSize = 100;
+        private long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+        /**
+         * @param batchFunction Makes one request for a batch of distinct keys. Is called on the thread of the caller
+         *                      that filled the batch or on a shared timer thread, so it should return quickly,
+         *                      without blocking.
+         */
+        public Builder<K, V> batchFunction(final Function<List<K>, CompletableFuture<Map<K, V>>> batchFunction) {
+            checkNotNull(batchFunction, "Batch function is null.");
+            this.batchFunction = batchFunction;
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize Keys per batch request. 100 by default.
+         */
+        public Builder<K, V> maxBatchSize(final int maxBatchSize) {
+            checkArgument(maxBatchSize > 0, "Max batch size must be positive.");
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxDelay How long a key may wait for its batch to fill up. 10 ms by default.
+         */
+        public Builder<K, V> maxDelay(final long maxDelay, final TimeUnit unit) {
+            checkArgument(maxDelay >= 0, "Max delay can't be negative.");
+            checkNotNull(unit, "Unit is null.");
+            this.maxDelayNanos = unit.toNanos(maxDelay);
+            return this;
+        }
+
+        public Batcher<K, V> build() {
+            return new Batcher<>(this);
+        }
+    }
+
+    /**
+     * @return A future of the key's value, completed once the batch containing the key has been requested. Each call
+     * gets its own future, so cancelling or completing it doesn't affect other callers of the same key.
+     */
+    public CompletableFuture<V> load(final K key) {
+        checkNotNull(key, "Key is null.");
+        final CompletableFuture<V> future;
+        Map<K, CompletableFuture<V>> full = null;
+        synchronized (this) {
+            final CompletableFuture<V> existing = pending.get(key);
+            if (existing != null) {
+                return existing.thenApply(Function.identity());
+            }
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                timer = SCHEDULER.schedule(this::flush, maxDelayNanos, NANOSECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return future.thenApply(Function.identity());
+    }
+
+    /**
+     * Requests the keys collected so far without waiting for the batch to fill up.
+     */
+    public void flush() {
+        final Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    private Map<K, CompletableFuture<V>> takePending() {
+        final Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(final Map<K, CompletableFuture<V>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final List<K> keys = new ArrayList<>(batch.keySet());
+        Futures.start(() -> batchFunction.apply(keys)).whenComplete((values, throwable) -> batch.forEach(
+                (key, future) -> {
+                    if (throwable != null) {
+                        future.completeExceptionally(throwable);
+                    } else if (values == null || !values.containsKey(key)) {
+                        future.completeExceptionally(
+                                new NoSuchElementException("Batch response has no value for key " + key + "."));
+                    } else {
+                        future.complete(values.get(key));
+                    }
+                }));
+    }
+
+}
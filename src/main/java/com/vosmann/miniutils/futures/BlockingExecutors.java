@@ -0,0 +1,102 @@
+package com.vosmann.miniutils.futures;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Executors for blocking calls, e.g. to the synchronous AWS SDK, that are to be consumed as CompletableFutures. On
+ * Java 21 and later, every task gets its own virtual thread, so tens of thousands of calls can block at once without
+ * sizing a pool. On older JVMs, which this library is compiled for, the virtual thread executor is not there, or is
+ * a preview that isn't enabled, and a bounded pool of daemon threads is used instead.
+ */
+public final class BlockingExecutors {
+
+    private static final int SHARED_FALLBACK_THREADS = 256;
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+    private BlockingExecutors() {
+    }
+
+    /**
+     * @return Whether this JVM runs blocking tasks on virtual threads.
+     */
+    public static boolean hasVirtualThreads() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * @param fallbackThreads How many threads to use if there are no virtual threads. Tasks beyond that wait in an
+     *                        unbounded queue.
+     * @return A new executor that the caller has to shut down.
+     */
+    public static ExecutorService create(final int fallbackThreads) {
+        checkArgument(fallbackThreads > 0, "Fallback thread count must be positive.");
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            final ExecutorService virtual = newVirtualThreadExecutor(NEW_VIRTUAL_THREAD_EXECUTOR);
+            if (virtual != null) {
+                return virtual;
+            }
+        }
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                fallbackThreads, fallbackThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("miniutils-blocking-%d").build());
+        pool.allowCoreThreadTimeOut(true); // Don't keep hundreds of idle threads around between bursts.
+        return pool;
+    }
+
+    /**
+     * @return An executor shared by everybody who does not bring their own. Never needs to be shut down, and can't be,
+     * as that would break it for everybody else; only execute() is exposed.
+     */
+    public static Executor shared() {
+        return Shared.EXECUTOR;
+    }
+
+    /**
+     * @return The factory of virtual thread executors, if it is there and works. On Java 19 and 20 it is a preview API
+     * that throws unless the JVM runs with --enable-preview, so it is tried out once here.
+     */
+    private static Method findVirtualThreadExecutor() {
+        final Method method;
+        try {
+            method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+        final ExecutorService probe = newVirtualThreadExecutor(method);
+        if (probe == null) {
+            return null;
+        }
+        probe.shutdown();
+        return method;
+    }
+
+    /**
+     * @return A new virtual thread executor, or null if the factory failed.
+     */
+    private static ExecutorService newVirtualThreadExecutor(final Method factory) {
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (final IllegalAccessException | InvocationTargetException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the shared executor on first use only.
+     */
+    private static final class Shared {
+        private static final Executor EXECUTOR = create(SHARED_FALLBACK_THREADS)::execute;
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.vosmann.miniutils.futures;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Starts lazily supplied tasks so that at most maxInFlight of them are running at any time. A new task is pulled from
+ * the iterator each time a running one completes, so tasks that have not started yet are never materialized.
+ * <p>
+ * Launching is serialized by a work-in-progress counter instead of a lock: whichever thread finds the counter at zero
+ * does the launching for everybody, which also keeps synchronously completing tasks from recursing.
+ */
+final class BoundedLauncher<T> {
+
+    private final Iterator<? extends Supplier<CompletableFuture<T>>> tasks;
+    private final int maxInFlight;
+    private final BiConsumer<? super T, ? super Throwable> onComplete;
+
+    private final AtomicInteger workInProgress = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private boolean exhausted; // Only accessed by the thread currently launching.
+
+    BoundedLauncher(final Iterator<? extends Supplier<CompletableFuture<T>>> tasks,
+                    final int maxInFlight,
+                    final BiConsumer<? super T, ? super Throwable> onComplete) {
+        checkNotNull(tasks, "Tasks are null.");
+        checkArgument(maxInFlight > 0, "Max in-flight count must be positive.");
+        checkNotNull(onComplete, "Completion handler is null.");
+        this.tasks = tasks;
+        this.maxInFlight = maxInFlight;
+        this.onComplete = onComplete;
+    }
+
+    /**
+     * @return A future that completes once all tasks have been started and have completed.
+     */
+    CompletableFuture<Void> start() {
+        launch();
+        return done;
+    }
+
+    private void launch() {
+        if (workInProgress.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            try {
+                while (!exhausted && inFlight.get() < maxInFlight) {
+                    if (!tasks.hasNext()) {
+                        exhausted = true;
+                        break;
+                    }
+                    final Supplier<CompletableFuture<T>> task = tasks.next();
+                    inFlight.incrementAndGet();
+                    run(task);
+                }
+            } catch (final RuntimeException e) {
+                exhausted = true;
+                done.completeExceptionally(e);
+            }
+            if (exhausted && inFlight.get() == 0) {
+                done.complete(null);
+            }
+        } while (workInProgress.decrementAndGet() != 0);
+    }
+
+    private void run(final Supplier<CompletableFuture<T>> task) {
+        Futures.start(task).whenComplete((result, throwable) -> {
+            try {
+                onComplete.accept(result, throwable);
+            } finally {
+                inFlight.decrementAndGet();
+                launch();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.vosmann.miniutils.futures;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Append-only collection stored as a linked chain of fixed-size array chunks. Adding never copies existing elements,
+ * and appending another ChunkedList only links its chunks, in constant time. That makes it a cheap container for
+ * parallel collectors, whose combiners would otherwise copy at every level of the merge tree.
+ * Not thread-safe; a parallel stream gives each thread its own container.
+ */
+final class ChunkedList<E> extends AbstractCollection<E> {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private Chunk head;
+    private Chunk tail;
+    private int size;
+
+    @Override
+    public boolean add(final E element) {
+        if (tail == null || tail.count == CHUNK_SIZE) {
+            link(new Chunk());
+        }
+        tail.elements[tail.count++] = element;
+        ++size;
+        return true;
+    }
+
+    /**
+     * Moves the other list's chunks to the end of this one. The other list must not be used afterwards.
+     *
+     * @return This list.
+     */
+    ChunkedList<E> append(final ChunkedList<E> other) {
+        if (other.head != null) {
+            link(other.head);
+            tail = other.tail;
+            size += other.size;
+        }
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private Chunk chunk = head;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                while (chunk != null && index == chunk.count) {
+                    chunk = chunk.next;
+                    index = 0;
+                }
+                return chunk != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (E) chunk.elements[index++];
+            }
+        };
+    }
+
+    private void link(final Chunk chunk) {
+        if (head == null) {
+            head = chunk;
+        } else {
+            tail.next = chunk;
+        }
+        tail = chunk;
+    }
+
+    private static final class Chunk {
+
+        private final Object[] elements = new Object[CHUNK_SIZE];
+        private int count;
+        private Chunk next;
+    }
+
+}
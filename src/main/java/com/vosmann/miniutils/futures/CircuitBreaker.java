@@ -0,0 +1,304 @@
+package com.vosmann.miniutils.futures;
+
+import com.google.common.base.Ticker;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Stops calling a backend that keeps failing or answering slowly, so callers fail fast instead of waiting for
+ * timeouts. While closed, the outcomes of the last windowSize calls are tracked in a ring buffer; once at least
+ * minimumCalls are in it and the rate of failures or of slow calls reaches its threshold, the breaker opens. While
+ * open, calls fail right away with a CircuitOpenException. After the open duration, the breaker lets a few probe calls
+ * through: if all of them succeed quickly it closes with an empty window, and if any fails or is slow it opens again.
+ * <p>
+ * The breaker is lock-free: each state is an object that is swapped with a compare-and-set, and a call's outcome only
+ * counts towards the state it was started in. A probe that never completes keeps the breaker half-open, so calls
+ * should have a timeout.
+ */
+@ThreadSafe
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int probes;
+    private final Predicate<? super Throwable> isFailure;
+    private final Ticker ticker;
+    private final AtomicReference<Phase> phase;
+
+    private CircuitBreaker(final Builder builder) {
+        name = builder.name;
+        windowSize = builder.windowSize;
+        minimumCalls = Math.min(builder.minimumCalls, builder.windowSize);
+        failureRateThreshold = builder.failureRateThreshold;
+        slowCallRateThreshold = builder.slowCallRateThreshold;
+        slowCallNanos = builder.slowCallNanos;
+        openNanos = builder.openNanos;
+        probes = builder.probes;
+        isFailure = builder.isFailure;
+        ticker = builder.ticker;
+        phase = new AtomicReference<>(new Closed(windowSize));
+    }
+
+    public static final class Builder {
+        private String name = "default";
+        private int windowSize = 100;
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 0.5;
+        private double slowCallRateThreshold = 1;
+        private long slowCallNanos = TimeUnit.SECONDS.toNanos(10);
+        private long openNanos = TimeUnit.SECONDS.toNanos(30);
+        private int probes = 5;
+        private Predicate<? super Throwable> isFailure = throwable -> true;
+        private Ticker ticker = Ticker.systemTicker();
+
+        /**
+         * @param name Appears in the messages of CircuitOpenExceptions.
+         */
+        public Builder name(final String name) {
+            checkNotNull(name, "Name is null.");
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * @param windowSize   How many of the latest calls the rates are computed over. 100 by default.
+         * @param minimumCalls How many calls the window needs before the breaker can open. 20 by default.
+         */
+        public Builder window(final int windowSize, final int minimumCalls) {
+            checkArgument(windowSize > 0, "Window size must be positive.");
+            checkArgument(minimumCalls > 0, "Minimum calls must be positive.");
+            this.windowSize = windowSize;
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * @param failureRateThreshold Rate of failed calls in the window that opens the breaker. 0.5 by default.
+         */
+        public Builder failureRateThreshold(final double failureRateThreshold) {
+            checkArgument(0 < failureRateThreshold && failureRateThreshold <= 1, "Threshold must be in (0, 1].");
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * @param slowCallRateThreshold Rate of slow calls in the window that opens the breaker. 1 by default.
+         * @param slowCall              How long a call may take before it counts as slow. 10 seconds by default.
+         */
+        public Builder slowCalls(final double slowCallRateThreshold, final long slowCall, final TimeUnit unit) {
+            checkArgument(0 < slowCallRateThreshold && slowCallRateThreshold <= 1, "Threshold must be in (0, 1].");
+            checkArgument(slowCall > 0, "Slow call duration must be positive.");
+            checkNotNull(unit, "Unit is null.");
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.slowCallNanos = unit.toNanos(slowCall);
+            return this;
+        }
+
+        /**
+         * @param duration How long the breaker stays open before it lets probes through. 30 seconds by default.
+         */
+        public Builder openDuration(final long duration, final TimeUnit unit) {
+            checkArgument(duration > 0, "Open duration must be positive.");
+            checkNotNull(unit, "Unit is null.");
+            this.openNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * @param probes How many calls the half-open breaker lets through to decide whether to close. 5 by default.
+         */
+        public Builder probes(final int probes) {
+            checkArgument(probes > 0, "Probes must be positive.");
+            this.probes = probes;
+            return this;
+        }
+
+        /**
+         * @param isFailure Accepts the failures that count against the backend. Gets unwrapped Throwables. By default,
+         *                  all failures count.
+         */
+        public Builder failures(final Predicate<? super Throwable> isFailure) {
+            checkNotNull(isFailure, "Failure predicate is null.");
+            this.isFailure = isFailure;
+            return this;
+        }
+
+        public Builder ticker(final Ticker ticker) {
+            checkNotNull(ticker, "Ticker is null.");
+            this.ticker = ticker;
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+
+    /**
+     * @return The call's future, or a future failed with a CircuitOpenException if the breaker rejects the call.
+     */
+    public <T> CompletableFuture<T> call(final Supplier<CompletableFuture<T>> task) {
+        checkNotNull(task, "Task is null.");
+        final Phase current = currentPhase();
+        if (!current.permit()) {
+            return Futures.exceptionallyCompletedFuture(new CircuitOpenException(name));
+        }
+        final long startNanos = ticker.read();
+        final CompletableFuture<T> future = Futures.start(task);
+        future.whenComplete((value, throwable) -> {
+            final boolean failed = throwable != null && isFailure.test(Futures.unwrap(throwable));
+            final boolean slow = ticker.read() - startNanos >= slowCallNanos;
+            current.record(failed, slow);
+        });
+        return future;
+    }
+
+    /**
+     * @return A supplier that makes its calls through this breaker, e.g. for FanIn.bounded.
+     */
+    public <T> Supplier<CompletableFuture<T>> wrap(final Supplier<CompletableFuture<T>> task) {
+        checkNotNull(task, "Task is null.");
+        return () -> call(task);
+    }
+
+    public State getState() {
+        return currentPhase().state;
+    }
+
+    /**
+     * @return The current phase, after moving from open to half-open if the open duration is over.
+     */
+    private Phase currentPhase() {
+        final Phase current = phase.get();
+        if (current instanceof Open && ticker.read() - ((Open) current).openedNanos >= openNanos) {
+            phase.compareAndSet(current, new HalfOpen());
+            return phase.get();
+        }
+        return current;
+    }
+
+    private void transition(final Phase from, final Phase to) {
+        phase.compareAndSet(from, to);
+    }
+
+    private abstract static class Phase {
+
+        private final State state;
+
+        private Phase(final State state) {
+            this.state = state;
+        }
+
+        abstract boolean permit();
+
+        abstract void record(boolean failed, boolean slow);
+    }
+
+    /**
+     * Each call takes the next slot of the ring buffer and swaps its outcome in. The counters are adjusted by the
+     * difference between the new and the evicted outcome, so they stay exact once concurrent calls have recorded.
+     */
+    private final class Closed extends Phase {
+
+        private static final int SUCCESSFUL = 1;
+        private static final int FAILED = 2;
+        private static final int SLOW = 4;
+
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicInteger failedCalls = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        private Closed(final int windowSize) {
+            super(State.CLOSED);
+            outcomes = new AtomicIntegerArray(windowSize);
+        }
+
+        @Override
+        boolean permit() {
+            return true;
+        }
+
+        @Override
+        void record(final boolean failed, final boolean slow) {
+            final int outcome = SUCCESSFUL | (failed ? FAILED : 0) | (slow ? SLOW : 0);
+            final long call = calls.getAndIncrement();
+            final int evicted = outcomes.getAndSet((int) (call % outcomes.length()), outcome);
+            final int failedNow = failedCalls.addAndGet(flag(outcome, FAILED) - flag(evicted, FAILED));
+            final int slowNow = slowCalls.addAndGet(flag(outcome, SLOW) - flag(evicted, SLOW));
+            final long recorded = Math.min(call + 1, outcomes.length());
+            if (recorded >= minimumCalls && (failedNow >= failureRateThreshold * recorded
+                    || slowNow >= slowCallRateThreshold * recorded)) {
+                transition(this, new Open(ticker.read()));
+            }
+        }
+
+        private int flag(final int outcome, final int flag) {
+            return (outcome & flag) != 0 ? 1 : 0;
+        }
+    }
+
+    private final class Open extends Phase {
+
+        private final long openedNanos;
+
+        private Open(final long openedNanos) {
+            super(State.OPEN);
+            this.openedNanos = openedNanos;
+        }
+
+        @Override
+        boolean permit() {
+            return false;
+        }
+
+        @Override
+        void record(final boolean failed, final boolean slow) {
+        }
+    }
+
+    private final class HalfOpen extends Phase {
+
+        private final AtomicInteger permits = new AtomicInteger(probes);
+        private final AtomicInteger succeeded = new AtomicInteger();
+
+        private HalfOpen() {
+            super(State.HALF_OPEN);
+        }
+
+        @Override
+        boolean permit() {
+            return permits.getAndUpdate(left -> Math.max(left - 1, 0)) > 0;
+        }
+
+        @Override
+        void record(final boolean failed, final boolean slow) {
+            if (failed || slow) {
+                transition(this, new Open(ticker.read()));
+            } else if (succeeded.incrementAndGet() == probes) {
+                transition(this, new Closed(windowSize));
+            }
+        }
+    }
+
+}
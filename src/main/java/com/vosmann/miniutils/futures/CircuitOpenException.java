@@ -0,0 +1,12 @@
+package com.vosmann.miniutils.futures;
+
+/**
+ * Fails calls rejected by an open CircuitBreaker without starting them.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    CircuitOpenException(final String name) {
+        super("Circuit breaker " + name + " is open.");
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.vosmann.miniutils.futures;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Decides when a FanIn has enough results to complete without waiting for the rest of its futures. Once a policy is
+ * met, the FanIn completes and cancels the futures that are still outstanding.
+ */
+@FunctionalInterface
+public interface CompletionPolicy {
+
+    /**
+     * @param successful How many futures have completed successfully so far.
+     * @param failed     How many futures have completed exceptionally so far.
+     * @param total      How many futures the FanIn has.
+     * @return Whether the FanIn may complete now.
+     */
+    boolean isMet(int successful, int failed, int total);
+
+    /**
+     * The default: waits for every future.
+     */
+    static CompletionPolicy all() {
+        return (successful, failed, total) -> successful + failed == total;
+    }
+
+    /**
+     * Completes as soon as the given number of futures has succeeded, or once all are done if too few succeed.
+     */
+    static CompletionPolicy firstSuccesses(final int count) {
+        checkArgument(count > 0, "Success count must be positive.");
+        return (successful, failed, total) -> successful >= count || successful + failed == total;
+    }
+
+    /**
+     * Completes as soon as one future fails, or once all are done if none does.
+     */
+    static CompletionPolicy failFast() {
+        return (successful, failed, total) -> failed > 0 || successful + failed == total;
+    }
+
+    /**
+     * Completes as soon as the given share of all futures has succeeded, or as soon as too many have failed for that
+     * share to still be reachable.
+     *
+     * @param ratio A share in (0, 1].
+     */
+    static CompletionPolicy successRatio(final double ratio) {
+        checkArgument(0 < ratio && ratio <= 1, "Success ratio must be in (0, 1].");
+        return (successful, failed, total) -> {
+            final int needed = (int) Math.ceil(ratio * total);
+            return successful >= needed || total - failed < needed || successful + failed == total;
+        };
+    }
+
+}
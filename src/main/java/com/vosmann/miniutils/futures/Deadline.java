@@ -0,0 +1,175 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A point in time by which a piece of work, with everything it fans out into, has to be done. Pass it down the call
+ * chain instead of a timeout, so each step knows how much of the budget is left.
+ * <p>
+ * Futures tracked by a deadline fail with a DeadlineExceededException once it expires or is cancelled, and so do the
+ * stages depending on them. Tasks called through a deadline are not started at all once it has expired. A child
+ * deadline expires no later than its parent, and with it. The timer is only scheduled, on a shared scheduler, once the
+ * deadline tracks its first future.
+ */
+@ThreadSafe
+public final class Deadline {
+
+    private final long deadlineNanos;
+    private final Deadline parent;
+    private final Set<CompletableFuture<?>> tracked = ConcurrentHashMap.newKeySet();
+    private final Set<Deadline> children = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean armed = new AtomicBoolean();
+    private volatile boolean cancelled;
+    private volatile ScheduledFuture<?> timer;
+
+    /**
+     * @return A deadline the given time from now.
+     */
+    public static Deadline after(final long timeout, final TimeUnit unit) {
+        checkArgument(timeout >= 0, "Timeout can't be negative.");
+        checkNotNull(unit, "Unit is null.");
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout), null);
+    }
+
+    private Deadline(final long deadlineNanos, final Deadline parent) {
+        this.deadlineNanos = deadlineNanos;
+        this.parent = parent;
+    }
+
+    /**
+     * @return A deadline the given time from now, or this one if it is earlier. Expires when this one does.
+     */
+    public Deadline child(final long timeout, final TimeUnit unit) {
+        checkArgument(timeout >= 0, "Timeout can't be negative.");
+        checkNotNull(unit, "Unit is null.");
+        final long childNanos = System.nanoTime() + unit.toNanos(timeout);
+        return new Deadline(childNanos - deadlineNanos < 0 ? childNanos : deadlineNanos, this);
+    }
+
+    /**
+     * @return The time left, rounded down to the unit, or zero once expired.
+     */
+    public long remaining(final TimeUnit unit) {
+        checkNotNull(unit, "Unit is null.");
+        return unit.convert(remainingNanos(), NANOSECONDS);
+    }
+
+    /**
+     * Lets a task check its budget before it starts expensive work, e.g. a large download.
+     *
+     * @return Whether at least the given time is left.
+     */
+    public boolean hasRemaining(final long time, final TimeUnit unit) {
+        checkNotNull(unit, "Unit is null.");
+        return remainingNanos() >= unit.toNanos(time);
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() == 0;
+    }
+
+    /**
+     * Expires this deadline and its children now, failing everything they track.
+     */
+    public void cancel() {
+        expire();
+    }
+
+    /**
+     * Fails the future with a DeadlineExceededException when this deadline expires, unless it has completed by then.
+     * Stages that depend on it fail too, so the rest of a chain does not start.
+     *
+     * @return The future itself.
+     */
+    public <T> CompletableFuture<T> track(final CompletableFuture<T> future) {
+        checkNotNull(future, "Future is null.");
+        if (future.isDone()) {
+            return future;
+        }
+        arm();
+        tracked.add(future);
+        future.whenComplete((result, throwable) -> tracked.remove(future));
+        if (isExpired()) {
+            future.completeExceptionally(new DeadlineExceededException());
+        }
+        return future;
+    }
+
+    /**
+     * Starts the task only if this deadline has not expired yet, and tracks its future.
+     *
+     * @return The task's future, or a future failed with a DeadlineExceededException if the task was not started.
+     */
+    public <T> CompletableFuture<T> call(final Supplier<CompletableFuture<T>> task) {
+        checkNotNull(task, "Task is null.");
+        if (isExpired()) {
+            return Futures.exceptionallyCompletedFuture(new DeadlineExceededException());
+        }
+        return track(Futures.start(task));
+    }
+
+    /**
+     * Makes a task run within this deadline, e.g. for FanIn.bounded: {@code FanIn.bounded(tasks.map(deadline::wrap),
+     * maxInFlight)}. Tasks whose turn comes after the deadline fail without starting.
+     */
+    public <T> Supplier<CompletableFuture<T>> wrap(final Supplier<CompletableFuture<T>> task) {
+        checkNotNull(task, "Task is null.");
+        return () -> call(task);
+    }
+
+    /**
+     * Makes a step of a thenCompose chain run within this deadline:
+     * {@code list().thenCompose(deadline.compose(listing -> download(listing)))}.
+     */
+    public <T, R> Function<T, CompletableFuture<R>> compose(final Function<? super T, CompletableFuture<R>> step) {
+        checkNotNull(step, "Step is null.");
+        return value -> call(() -> step.apply(value));
+    }
+
+    private long remainingNanos() {
+        if (cancelled || (parent != null && parent.isExpired())) {
+            return 0;
+        }
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    private void arm() {
+        if (!armed.compareAndSet(false, true)) {
+            return;
+        }
+        timer = Futures.SCHEDULER.schedule(this::expire, remainingNanos(), NANOSECONDS);
+        if (parent != null) {
+            parent.arm();
+            parent.children.add(this);
+            if (parent.isExpired()) {
+                expire(); // The parent may have expired before it saw this child.
+            }
+        }
+    }
+
+    private void expire() {
+        cancelled = true;
+        final ScheduledFuture<?> currentTimer = timer;
+        if (currentTimer != null) {
+            currentTimer.cancel(false);
+        }
+        if (parent != null) {
+            parent.children.remove(this);
+        }
+        children.forEach(Deadline::expire);
+        tracked.forEach(future -> future.completeExceptionally(new DeadlineExceededException()));
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.vosmann.miniutils.futures;
+
+/**
+ * Fails work that was tracked by a Deadline, or called through one, once the deadline has expired or was cancelled.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    DeadlineExceededException() {
+        super("Deadline exceeded.");
+    }
+
+}
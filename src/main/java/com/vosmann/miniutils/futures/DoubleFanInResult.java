@@ -0,0 +1,45 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.DoubleStream;
+
+/**
+ * Index-aligned double results of a FanIn, stored unboxed in a double[].
+ */
+@Immutable
+public class DoubleFanInResult extends AbstractIndexedFanInResult {
+
+    private final double[] values;
+
+    <T> DoubleFanInResult(final ResultSlots<T> slots, final ToDoubleFunction<? super T> mapper) {
+        super(slots);
+        values = new double[size()];
+        for (final int index : successfulIndices()) {
+            values[index] = mapper.applyAsDouble(slots.getSuccessful(index));
+        }
+    }
+
+    /**
+     * @return The double result of the index-th future.
+     * @throws IllegalStateException If that future did not complete successfully.
+     */
+    public double getDouble(final int index) {
+        checkSuccessful(index);
+        return values[index];
+    }
+
+    /**
+     * @return The results of the successful futures, in the order of the futures.
+     */
+    public DoubleStream getSuccessful() {
+        return Arrays.stream(successfulIndices()).mapToDouble(index -> values[index]);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DoubleFanInResult{size=%d, succeeded=%d}", size(), getSuccessfulCount());
+    }
+
+}
@@ -4,81 +4,279 @@ import com.google.common.collect.ImmutableList;
 
 import javax.annotation.concurrent.Immutable;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Uninterruptibles.takeUninterruptibly;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.unmodifiableSet;
-import static java.util.stream.Collectors.toList;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliterator;
 
 /**
  * Convenience class for getting results from many CompletableFutures, be they successful or completed
  * exceptionally.
- * The constructor converts all the futures into Void ones because we will only want to know when they are done and
- * will use FanInResultFuture for keeping track of the actual results.
+ * Results are either collected into a FanInResult (get, whenComplete) or streamed one by one in completion order
+ * (forEach, completionOrder).
  */
 @Immutable
 public class FanIn<T> {
 
-    private final FanInResult.Builder<T> multiFutureResult;
     private final List<CompletableFuture<T>> futures;
+    private final CompletionPolicy policy;
+    private final long startNanos;
+    private volatile Accumulation<T> accumulation;
 
     public static <T> FanIn<T> of(final CompletableFuture<T> future) {
         return new FanIn<>(singletonList(future));
     }
 
+    /**
+     * Fans out over tasks that have not been started yet, keeping at most maxInFlight of them running at once. A new
+     * task is started each time a running one completes. The stream is consumed lazily, so tasks waiting for their
+     * turn are never materialized.
+     *
+     * @param tasks       Suppliers that start a task each time they are called. A supplier that throws or returns
+     *                    null counts as a failed task.
+     * @param maxInFlight Maximum number of tasks running at the same time.
+     * @return A future of the FanInResult of all the tasks, completed once the last one has finished.
+     */
+    public static <T> CompletableFuture<FanInResult<T>> bounded(
+            final Stream<? extends Supplier<CompletableFuture<T>>> tasks, final int maxInFlight) {
+        checkNotNull(tasks, "Tasks are null.");
+        final FanInResult.Builder<T> builder = new FanInResult.Builder<>();
+        return new BoundedLauncher<T>(tasks.iterator(), maxInFlight, (result, throwable) -> {
+            if (throwable == null) {
+                builder.add(result);
+            } else {
+                builder.add(throwable);
+            }
+        }).start().thenApply(aVoid -> builder.build());
+    }
+
+    /**
+     * Like bounded, but calls the task suppliers on the executor instead of the thread that completed the previous
+     * task, e.g. to run a bulk fan-out with low priority: {@code FanIn.bounded(tasks, 100,
+     * priorityExecutor.withPriority(Priority.BULK))}.
+     *
+     * @param executor Runs the suppliers. Tasks it rejects count as failed.
+     */
+    public static <T> CompletableFuture<FanInResult<T>> bounded(
+            final Stream<? extends Supplier<CompletableFuture<T>>> tasks, final int maxInFlight,
+            final Executor executor) {
+        checkNotNull(tasks, "Tasks are null.");
+        checkNotNull(executor, "Executor is null.");
+        return bounded(tasks.map(task -> () -> Futures.startOn(executor, task)), maxInFlight);
+    }
+
+    /**
+     * Like bounded, but instead of collecting every result, reduces them with the collectors as they arrive. As the
+     * tasks' futures are not kept, memory stays constant in the number of tasks.
+     *
+     * @param successes Reduces the results of successful tasks, in no particular order.
+     * @param failures  Reduces the Throwables of failed tasks, in no particular order.
+     * @return A future of the reduction, completed once the last task has finished.
+     */
+    public static <T, A, R, B, E> CompletableFuture<FanInReduction<R, E>> bounded(
+            final Stream<? extends Supplier<CompletableFuture<T>>> tasks, final int maxInFlight,
+            final Collector<? super T, A, R> successes, final Collector<? super Throwable, B, E> failures) {
+        checkNotNull(tasks, "Tasks are null.");
+        checkNotNull(successes, "Success collector is null.");
+        checkNotNull(failures, "Failure collector is null.");
+        final StripedReduction<T, A, R, B, E> reduction = new StripedReduction<>(successes, failures);
+        return new BoundedLauncher<T>(tasks.iterator(), maxInFlight, (result, throwable) -> {
+            if (throwable == null) {
+                reduction.add(result);
+            } else {
+                reduction.add(throwable);
+            }
+        }).start().thenApply(aVoid -> reduction.finish());
+    }
+
     /**
      * Intended to be called by FanInCollector.
      */
     FanIn(final Collection<CompletableFuture<T>> futures) {
-        this.multiFutureResult = new FanInResult.Builder<>();
-        this.futures = futures.stream()
-                              .map(future -> future.<T>handle((result, throwable) -> {
-                                  if (throwable == null) {
-                                      multiFutureResult.add(result);
-                                  } else {
-                                      multiFutureResult.add(throwable);
-                                  }
-                                  return null; // Unused; type is Void.
-                              }))
-                              .collect(toList());
+        this(futures, CompletionPolicy.all(), System.nanoTime());
+    }
+
+    private FanIn(final Collection<CompletableFuture<T>> futures, final CompletionPolicy policy,
+                  final long startNanos) {
+        checkNotNull(policy, "Completion policy is null.");
+        this.futures = ImmutableList.copyOf(futures);
+        this.policy = policy;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * @return A FanIn over the same futures that completes as soon as the given policy is met, cancelling the futures
+     * that are still outstanding at that point. Their results are not part of the FanInResult.
+     */
+    public FanIn<T> withPolicy(final CompletionPolicy policy) {
+        return new FanIn<>(futures, policy, startNanos);
+    }
+
+    /**
+     * Makes the deadline track all of this FanIn's futures, so the ones still outstanding when it expires fail with a
+     * DeadlineExceededException. Unlike withPolicy, this doesn't derive a new FanIn: it acts on the futures, which this
+     * FanIn shares with every other one over them. To keep tasks from even starting after the deadline, use
+     * FanIn.bounded with Deadline.wrap.
+     *
+     * @return This FanIn, for chaining.
+     */
+    public FanIn<T> trackBy(final Deadline deadline) {
+        checkNotNull(deadline, "Deadline is null.");
+        futures.forEach(deadline::track);
+        return this;
+    }
 
+    /**
+     * Reports when each future completes, measured from this FanIn's creation, to the listener. Attach listeners
+     * right after creating the FanIn; futures that completed before are reported with the time of this call.
+     *
+     * @param listener For example a FanInStats.
+     * @return This FanIn.
+     */
+    public FanIn<T> listen(final FanInListener listener) {
+        checkNotNull(listener, "Listener is null.");
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicLong firstNanos = new AtomicLong(Long.MAX_VALUE);
+        final AtomicLong lastNanos = new AtomicLong();
+        if (futures.isEmpty()) {
+            listener.onComplete(0, 0, 0, 0);
+        }
+        for (int i = 0; i < futures.size(); ++i) {
+            final int index = i;
+            futures.get(index).whenComplete((result, throwable) -> {
+                final long latencyNanos = System.nanoTime() - startNanos;
+                firstNanos.accumulateAndGet(latencyNanos, Math::min);
+                lastNanos.accumulateAndGet(latencyNanos, Math::max);
+                if (throwable == null) {
+                    listener.onSuccess(index, latencyNanos);
+                } else {
+                    failed.incrementAndGet();
+                    listener.onFailure(index, latencyNanos, throwable);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    listener.onComplete(futures.size() - failed.get(), failed.get(), firstNanos.get(),
+                                        lastNanos.get());
+                }
+            });
+        }
+        return this;
     }
 
     /**
-     * Blocking call that waits for all futures to finish.
+     * Blocking call that waits for all futures to finish, or until the completion policy is met.
      *
      * @return FanInResult containing results of successfully completed futures and Throwables for failed ones.
      */
     public FanInResult<T> get() {
-        allOf().join();
-        return multiFutureResult.build();
+        final Accumulation<T> accumulation = accumulation();
+        accumulation.done.join();
+        return accumulation.build();
     }
 
     /**
-     * Blocking call that waits for all futures to finish.
+     * Blocking call that waits for all futures to finish, or until the completion policy is met. Futures that are
+     * still outstanding when the timeout expires are cancelled and show up as CancellationExceptions.
      *
      * @param timeout How long to wait.
      * @param unit    Waiting unit.
      * @return FanInResult containing results of successfully completed futures and Throwables for failed ones.
      */
     public FanInResult<T> get(final long timeout, final TimeUnit unit) {
+        final Accumulation<T> accumulation = accumulation();
         try {
-            allOf().get(timeout, unit);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            accumulation.done.get(timeout, unit);
+        } catch (final TimeoutException e) {
+            cancelOutstanding();
+            accumulation.finish();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
         }
-        return multiFutureResult.build();
+        return accumulation.build();
+    }
+
+    /**
+     * Blocking call like get(), but keeps every result at the position of its future.
+     *
+     * @return IndexedFanInResult with one slot per future.
+     */
+    public IndexedFanInResult<T> getIndexed() {
+        return new IndexedFanInResult<>(completedSlots());
+    }
+
+    /**
+     * Blocking call like getIndexed(), but stores the results as unboxed ints.
+     *
+     * @param mapper Extracts the number from each successful result, e.g. a size or a count.
+     */
+    public IntFanInResult getIndexedInts(final ToIntFunction<? super T> mapper) {
+        checkNotNull(mapper, "Mapper is null.");
+        return new IntFanInResult(completedSlots(), mapper);
+    }
+
+    /**
+     * Blocking call like getIndexed(), but stores the results as unboxed longs.
+     *
+     * @param mapper Extracts the number from each successful result, e.g. a size or a count.
+     */
+    public LongFanInResult getIndexedLongs(final ToLongFunction<? super T> mapper) {
+        checkNotNull(mapper, "Mapper is null.");
+        return new LongFanInResult(completedSlots(), mapper);
+    }
+
+    /**
+     * Blocking call like getIndexed(), but stores the results as unboxed doubles.
+     *
+     * @param mapper Extracts the number from each successful result.
+     */
+    public DoubleFanInResult getIndexedDoubles(final ToDoubleFunction<? super T> mapper) {
+        checkNotNull(mapper, "Mapper is null.");
+        return new DoubleFanInResult(completedSlots(), mapper);
+    }
+
+    private ResultSlots<T> completedSlots() {
+        final Accumulation<T> accumulation = accumulation();
+        accumulation.done.join();
+        return accumulation.slots();
+    }
+
+    /**
+     * Cancels the futures that have not completed yet. Work that has not started yet will not start; running work is
+     * not interrupted, as CompletableFuture does not support that.
+     */
+    private void cancelOutstanding() {
+        futures.forEach(future -> future.cancel(false));
     }
 
     /**
@@ -90,38 +288,217 @@ public class FanIn<T> {
      *                 exceptionally completed futures.
      */
     public void whenComplete(final Consumer<FanInResult<T>> consumer) {
-        allOf().whenComplete((aVoid, throwable) -> consumer.accept(multiFutureResult.build()));
+        final Accumulation<T> accumulation = accumulation();
+        accumulation.done.whenComplete((aVoid, throwable) -> consumer.accept(accumulation.build()));
+    }
+
+    /**
+     * Reducing alternative to get and whenComplete for when only an aggregate is needed, e.g. a total size or a count
+     * of failures per exception type. Results are combined with the collectors as the futures complete and are never
+     * collected into lists; completing threads lock only one of a few stripes, never a global lock. Waits for all
+     * futures, regardless of the completion policy.
+     *
+     * @param successes Reduces the results of successful futures, in no particular order.
+     * @param failures  Reduces the Throwables of failed futures, in no particular order.
+     * @return A future of the reduction, completed once the last future has been added to it. It completes
+     * exceptionally if one of the collectors threw.
+     */
+    public <A, R, B, E> CompletableFuture<FanInReduction<R, E>> reduce(
+            final Collector<? super T, A, R> successes, final Collector<? super Throwable, B, E> failures) {
+        checkNotNull(successes, "Success collector is null.");
+        checkNotNull(failures, "Failure collector is null.");
+        final StripedReduction<T, A, R, B, E> reduction = new StripedReduction<>(successes, failures);
+        return allOf(futures.stream()
+                            .map(future -> future.<Void>handle((result, throwable) -> {
+                                if (throwable == null) {
+                                    reduction.add(result);
+                                } else {
+                                    reduction.add(throwable);
+                                }
+                                return null;
+                            })))
+                .thenApply(aVoid -> reduction.finish());
+    }
+
+    /**
+     * Streaming alternative to whenComplete. Every result is handed to one of the consumers as soon as its own future
+     * completes, so a single slow future does not hold back the ones that are already done. Nothing is buffered in a
+     * FanInResult.
+     *
+     * @param onSuccess Receives the result of every successfully completed future.
+     * @param onFailure Receives the Throwable of every exceptionally completed future.
+     * @return A future that completes once every result has been handed over. It completes exceptionally if one of
+     * the consumers threw.
+     */
+    public CompletableFuture<Void> forEach(final Consumer<? super T> onSuccess,
+                                           final Consumer<? super Throwable> onFailure) {
+        checkNotNull(onSuccess, "Success consumer is null.");
+        checkNotNull(onFailure, "Failure consumer is null.");
+        return allOf(futures.stream()
+                            .map(future -> future.<Void>handle((result, throwable) -> {
+                                if (throwable == null) {
+                                    onSuccess.accept(result);
+                                } else {
+                                    onFailure.accept(throwable);
+                                }
+                                return null;
+                            })));
+    }
+
+    /**
+     * Pull-based streaming. The returned Stream is lazy and yields the futures in the order in which they complete,
+     * blocking until the next one is done. Each yielded future is already completed, so its result or Throwable can be
+     * read without blocking. The consumer sets the pace; completed futures wait for it only as references in a queue
+     * and no results are copied into a FanInResult.
+     *
+     * @return A sequential Stream of exactly as many completed futures as this FanIn holds.
+     */
+    public Stream<CompletableFuture<T>> completionOrder() {
+        final BlockingQueue<CompletableFuture<T>> completed = new LinkedBlockingQueue<>();
+        futures.forEach(future -> future.whenComplete((result, throwable) -> completed.add(future)));
+
+        final Iterator<CompletableFuture<T>> iterator = new Iterator<CompletableFuture<T>>() {
+            private int remaining = futures.size();
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public CompletableFuture<T> next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException("All futures have already been consumed.");
+                }
+                --remaining;
+                return takeUninterruptibly(completed);
+            }
+        };
+        return StreamSupport.stream(spliterator(iterator, futures.size(), ORDERED | NONNULL), false);
     }
 
-    private CompletableFuture<Void> allOf() {
-        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+    /**
+     * Attaches the result-collecting handlers on first use, so that a FanIn used only for streaming never collects.
+     */
+    private Accumulation<T> accumulation() {
+        Accumulation<T> current = accumulation;
+        if (current == null) {
+            synchronized (this) {
+                current = accumulation;
+                if (current == null) {
+                    current = new Accumulation<>(futures, policy);
+                    current.done.thenRun(this::cancelOutstanding);
+                    accumulation = current;
+                }
+            }
+        }
+        return current;
     }
 
+    private static CompletableFuture<Void> allOf(final Stream<CompletableFuture<Void>> futures) {
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Results of all futures, collected as they complete into the slot at each future's position. Once the completion
+     * policy is met, the slots are copied and done completes; results are built from that copy only, so results that
+     * arrive later are ignored, however they race with the policy being met.
+     */
+    private static final class Accumulation<T> {
+
+        private final ResultSlots<T> slots;
+        private final CompletionPolicy policy;
+        private final int total;
+        private final AtomicInteger successful = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile ResultSlots<T> snapshot; // Set once, before done completes.
+
+        private Accumulation(final List<CompletableFuture<T>> futures, final CompletionPolicy policy) {
+            this.slots = new ResultSlots<>(futures.size());
+            this.policy = policy;
+            this.total = futures.size();
+            checkPolicy(0, 0);
+            for (int i = 0; i < total; ++i) {
+                final int index = i;
+                futures.get(index).whenComplete((result, throwable) -> add(index, result, throwable));
+            }
+        }
+
+        private void add(final int index, final T result, final Throwable throwable) {
+            if (finished.get()) {
+                return;
+            }
+            if (throwable == null) {
+                slots.setSuccessful(index, result);
+                checkPolicy(successful.incrementAndGet(), failed.get());
+            } else {
+                slots.setThrowable(index, throwable);
+                checkPolicy(successful.get(), failed.incrementAndGet());
+            }
+        }
+
+        private void checkPolicy(final int successful, final int failed) {
+            if (policy.isMet(successful, failed, total)) {
+                finish();
+            }
+        }
+
+        /**
+         * Freezes the results: the slots written so far, which include those of every result the policy has counted,
+         * are all that will ever be part of them.
+         */
+        private void finish() {
+            if (finished.compareAndSet(false, true)) {
+                snapshot = slots.copy();
+                done.complete(null);
+            }
+        }
+
+        /**
+         * @return The frozen slots once done, or a copy of the slots written so far otherwise.
+         */
+        private ResultSlots<T> slots() {
+            final ResultSlots<T> frozen = snapshot;
+            return frozen != null ? frozen : slots.copy();
+        }
+
+        private FanInResult<T> build() {
+            return slots().build();
+        }
+    }
+
+    /**
+     * Collects futures into a FanIn, keeping their encounter order. Safe and cheap to use with parallel streams:
+     * merging the partial containers only links their chunks instead of copying them, so the futures are copied just
+     * once, when the FanIn is created.
+     */
     public static class FanInCollector<T>
-            implements Collector<CompletableFuture<T>, ImmutableList.Builder<CompletableFuture<T>>, FanIn<T>> {
+            implements Collector<CompletableFuture<T>, ChunkedList<CompletableFuture<T>>, FanIn<T>> {
 
         public static <T> FanInCollector<T> toFanIn() {
             return new FanInCollector<>();
         }
 
         @Override
-        public Supplier<ImmutableList.Builder<CompletableFuture<T>>> supplier() {
-            return ImmutableList.Builder<CompletableFuture<T>>::new;
+        public Supplier<ChunkedList<CompletableFuture<T>>> supplier() {
+            return ChunkedList::new;
         }
 
         @Override
-        public BiConsumer<ImmutableList.Builder<CompletableFuture<T>>, CompletableFuture<T>> accumulator() {
-            return (builder, element) -> builder.add(element);
+        public BiConsumer<ChunkedList<CompletableFuture<T>>, CompletableFuture<T>> accumulator() {
+            return ChunkedList::add;
         }
 
         @Override
-        public BinaryOperator<ImmutableList.Builder<CompletableFuture<T>>> combiner() {
-            return (builder1, builder2) -> builder1.addAll(builder2.build());
+        public BinaryOperator<ChunkedList<CompletableFuture<T>>> combiner() {
+            return ChunkedList::append;
         }
 
         @Override
-        public Function<ImmutableList.Builder<CompletableFuture<T>>, FanIn<T>> finisher() {
-            return builder -> new FanIn<>(builder.build());
+        public Function<ChunkedList<CompletableFuture<T>>, FanIn<T>> finisher() {
+            return FanIn::new;
         }
 
         @Override
@@ -0,0 +1,35 @@
+package com.vosmann.miniutils.futures;
+
+/**
+ * Receives timings of a FanIn's futures, measured from the moment the FanIn was created. Called on the threads that
+ * complete the futures, so implementations must be thread-safe and cheap.
+ */
+public interface FanInListener {
+
+    /**
+     * @param index        Position of the future in the FanIn.
+     * @param latencyNanos Time from the FanIn's creation until the future completed.
+     */
+    default void onSuccess(final int index, final long latencyNanos) {
+    }
+
+    /**
+     * @param index        Position of the future in the FanIn.
+     * @param latencyNanos Time from the FanIn's creation until the future completed.
+     * @param throwable    What the future completed with.
+     */
+    default void onFailure(final int index, final long latencyNanos, final Throwable throwable) {
+    }
+
+    /**
+     * Called once, after the last future has completed.
+     *
+     * @param successful  How many futures completed successfully.
+     * @param failed      How many futures completed exceptionally.
+     * @param firstNanos  Time from the FanIn's creation until the first future completed.
+     * @param lastNanos   Time from the FanIn's creation until the last future completed.
+     */
+    default void onComplete(final int successful, final int failed, final long firstNanos, final long lastNanos) {
+    }
+
+}
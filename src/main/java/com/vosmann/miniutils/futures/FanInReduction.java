@@ -0,0 +1,49 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Aggregate of a reducing fan-in: what the success collector made of the results of the successful futures and what
+ * the failure collector made of the Throwables of the failed ones.
+ */
+@Immutable
+public class FanInReduction<R, E> {
+
+    private final R successful;
+    private final E throwables;
+    private final long successfulCount;
+    private final long throwableCount;
+
+    FanInReduction(final R successful, final E throwables, final long successfulCount, final long throwableCount) {
+        this.successful = successful;
+        this.throwables = throwables;
+        this.successfulCount = successfulCount;
+        this.throwableCount = throwableCount;
+    }
+
+    public R getSuccessful() {
+        return successful;
+    }
+
+    public E getThrowables() {
+        return throwables;
+    }
+
+    public long getSuccessfulCount() {
+        return successfulCount;
+    }
+
+    public long getThrowableCount() {
+        return throwableCount;
+    }
+
+    public boolean hasThrowables() {
+        return throwableCount > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Succeeded %d: %s Failed %d: %s", successfulCount, successful, throwableCount, throwables);
+    }
+
+}
@@ -1,19 +1,31 @@
 package com.vosmann.miniutils.futures;
 
 import javax.annotation.concurrent.Immutable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.stream.Stream;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Collections.synchronizedList;
 import static java.util.Collections.unmodifiableList;
 import static java.util.stream.Collectors.joining;
 
+/**
+ * Results of successfully completed futures and Throwables of failed ones.
+ * Concatenation is persistent and takes constant time: the result of concat only points to its two parts, which it
+ * shares with any other results built from them. Its lists are assembled on first access, in one pass over all the
+ * parts, so merging a tree of sub-fan-ins costs the same as one flat fan-in.
+ */
 @Immutable
 public class FanInResult<T> {
 
-    private final List<T> successful;
-    private final List<Throwable> throwables;
+    private final int successfulCount;
+    private final int throwableCount;
+    private final FanInResult<T> left; // Left and right are null unless this is a concatenation.
+    private final FanInResult<T> right;
+    private volatile Elements<T> elements; // Null until a concatenation is first accessed.
 
     public static <T> FanInResult<T> success(T... successful) {
         final Builder<T> builder = new Builder<>();
@@ -28,42 +40,116 @@ public class FanInResult<T> {
     }
 
     private FanInResult(final Builder<T> builder) {
-        successful = unmodifiableList(builder.successful);
-        throwables = unmodifiableList(builder.throwables);
+        this(new ArrayList<>(builder.successful), new ArrayList<>(builder.throwables));
+    }
+
+    /**
+     * Takes ownership of the given lists; they must not be modified afterwards.
+     */
+    FanInResult(final List<T> successful, final List<Throwable> throwables) {
+        successfulCount = successful.size();
+        throwableCount = throwables.size();
+        left = null;
+        right = null;
+        elements = new Elements<>(unmodifiableList(successful), unmodifiableList(throwables));
+    }
+
+    private FanInResult(final FanInResult<T> left, final FanInResult<T> right) {
+        successfulCount = left.successfulCount + right.successfulCount;
+        throwableCount = left.throwableCount + right.throwableCount;
+        this.left = left;
+        this.right = right;
     }
 
     public List<T> getSuccessful() {
-        return successful;
+        return elements().successful;
     }
 
     public List<Throwable> getThrowables() {
-        return throwables;
+        return elements().throwables;
     }
 
     public boolean hasThrowables() {
-        return !throwables.isEmpty();
+        return throwableCount > 0;
     }
 
     public String getThrowableMessages() {
-        return "[" + throwables.stream()
-                               .map(Throwable::toString)
-                               .collect(joining(", "))
+        return "[" + getThrowables().stream()
+                                    .map(Throwable::toString)
+                                    .collect(joining(", "))
                 + "]";
     }
 
     @Override
     public String toString() {
         return String.format("Succeeded %d: %s Failed %d: %s",
-                             successful.size(), successful, throwables.size(), throwables);
+                             successfulCount, getSuccessful(), throwableCount, getThrowables());
     }
 
+    /**
+     * Constant time; neither this nor the other result is copied.
+     *
+     * @return A result with the elements of this one followed by those of the other one.
+     */
     public FanInResult<T> concat(FanInResult<T> other) {
-        final Builder<T> builder = new Builder<>();
-        Stream.concat(this.successful.stream(), other.successful.stream()).forEach(builder::add);
-        Stream.concat(this.throwables.stream(), other.throwables.stream()).forEach(builder::add);
-        return builder.build();
+        if (other.isEmpty()) {
+            return this;
+        } else if (isEmpty()) {
+            return other;
+        }
+        return new FanInResult<>(this, other);
+    }
+
+    private boolean isEmpty() {
+        return successfulCount == 0 && throwableCount == 0;
+    }
+
+    private Elements<T> elements() {
+        Elements<T> current = elements;
+        if (current == null) {
+            current = flatten();
+            elements = current;
+        }
+        return current;
+    }
+
+    /**
+     * Walks the concatenation tree from left to right without recursing, as trees built by repeated concat are
+     * often as deep as they are long.
+     */
+    private Elements<T> flatten() {
+        final List<T> successful = new ArrayList<>(successfulCount);
+        final List<Throwable> throwables = new ArrayList<>(throwableCount);
+        final Deque<FanInResult<T>> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            final FanInResult<T> part = stack.pop();
+            final Elements<T> partElements = part.elements;
+            if (partElements != null) {
+                successful.addAll(partElements.successful);
+                throwables.addAll(partElements.throwables);
+            } else {
+                stack.push(part.right);
+                stack.push(part.left);
+            }
+        }
+        return new Elements<>(unmodifiableList(successful), unmodifiableList(throwables));
+    }
+
+    private static final class Elements<T> {
+
+        private final List<T> successful;
+        private final List<Throwable> throwables;
+
+        private Elements(final List<T> successful, final List<Throwable> throwables) {
+            this.successful = successful;
+            this.throwables = throwables;
+        }
     }
 
+    /**
+     * Thread-safe. Building copies the elements once, so the result doesn't change with later adds.
+     */
     public static final class Builder<T> {
 
         private final List<T> successful = synchronizedList(new ArrayList<T>());
@@ -75,6 +161,7 @@ public class FanInResult<T> {
         }
 
         public Builder<T> add(Throwable throwable) {
+            checkNotNull(throwable, "Throwable is null.");
             throwables.add(throwable);
             return this;
         }
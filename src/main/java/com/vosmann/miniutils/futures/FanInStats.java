@@ -0,0 +1,163 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * FanInListener that aggregates the timings of any number of FanIns into histograms: the latency of every future,
+ * the time to the first and to the last result of each FanIn, and the spread between them, which shows how much the
+ * stragglers cost. Can be registered as an MXBean.
+ */
+@ThreadSafe
+public class FanInStats implements FanInListener, FanInStatsMXBean {
+
+    private static final String JMX_DOMAIN = "com.vosmann.miniutils.futures";
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LongAdder fanIns = new LongAdder();
+    private final LongAdder successful = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram timeToFirst = new LatencyHistogram();
+    private final LatencyHistogram timeToLast = new LatencyHistogram();
+    private final LatencyHistogram stragglerSpread = new LatencyHistogram();
+
+    @Override
+    public void onSuccess(final int index, final long latencyNanos) {
+        successful.increment();
+        latency.record(latencyNanos);
+    }
+
+    @Override
+    public void onFailure(final int index, final long latencyNanos, final Throwable throwable) {
+        failed.increment();
+        latency.record(latencyNanos);
+    }
+
+    @Override
+    public void onComplete(final int successful, final int failed, final long firstNanos, final long lastNanos) {
+        fanIns.increment();
+        timeToFirst.record(firstNanos);
+        timeToLast.record(lastNanos);
+        stragglerSpread.record(lastNanos - firstNanos);
+    }
+
+    /**
+     * Registers these stats with the platform MBean server.
+     *
+     * @param name Distinguishes these stats from other FanInStats, e.g. the name of the fanned out operation.
+     * @return These stats.
+     */
+    public FanInStats register(final String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName(name));
+            return this;
+        } catch (final JMException e) {
+            throw new IllegalStateException("Could not register FanInStats " + name + ".", e);
+        }
+    }
+
+    public void unregister(final String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+        } catch (final JMException e) {
+            throw new IllegalStateException("Could not unregister FanInStats " + name + ".", e);
+        }
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public LatencyHistogram getTimeToFirst() {
+        return timeToFirst;
+    }
+
+    public LatencyHistogram getTimeToLast() {
+        return timeToLast;
+    }
+
+    public LatencyHistogram getStragglerSpread() {
+        return stragglerSpread;
+    }
+
+    @Override
+    public long getFanIns() {
+        return fanIns.sum();
+    }
+
+    @Override
+    public long getSuccessful() {
+        return successful.sum();
+    }
+
+    @Override
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public double getLatencyMeanMillis() {
+        return latency.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return millis(latency.getPercentile(0.5));
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return millis(latency.getPercentile(0.99));
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return millis(latency.getMax());
+    }
+
+    @Override
+    public double getTimeToFirstP50Millis() {
+        return millis(timeToFirst.getPercentile(0.5));
+    }
+
+    @Override
+    public double getTimeToLastP50Millis() {
+        return millis(timeToLast.getPercentile(0.5));
+    }
+
+    @Override
+    public double getTimeToLastP99Millis() {
+        return millis(timeToLast.getPercentile(0.99));
+    }
+
+    @Override
+    public double getStragglerSpreadP50Millis() {
+        return millis(stragglerSpread.getPercentile(0.5));
+    }
+
+    @Override
+    public double getStragglerSpreadP99Millis() {
+        return millis(stragglerSpread.getPercentile(0.99));
+    }
+
+    @Override
+    public String toString() {
+        return "FanInStats{fanIns=" + getFanIns() + ", successful=" + getSuccessful() + ", failed=" + getFailed()
+                + ", latency=" + latency + ", timeToFirst=" + timeToFirst + ", timeToLast=" + timeToLast
+                + ", stragglerSpread=" + stragglerSpread + '}';
+    }
+
+    private static ObjectName objectName(final String name) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=FanInStats,name=" + ObjectName.quote(name));
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.vosmann.miniutils.futures;
+
+/**
+ * JMX view of FanInStats. Durations are in milliseconds.
+ */
+public interface FanInStatsMXBean {
+
+    long getFanIns();
+
+    long getSuccessful();
+
+    long getFailed();
+
+    double getLatencyMeanMillis();
+
+    double getLatencyP50Millis();
+
+    double getLatencyP99Millis();
+
+    double getLatencyMaxMillis();
+
+    double getTimeToFirstP50Millis();
+
+    double getTimeToLastP50Millis();
+
+    double getTimeToLastP99Millis();
+
+    double getStragglerSpreadP50Millis();
+
+    double getStragglerSpreadP99Millis();
+
+}
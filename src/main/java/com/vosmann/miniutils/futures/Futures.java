@@ -1,13 +1,436 @@
 package com.vosmann.miniutils.futures;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class Futures {
 
+    /**
+     * Shared by the combinators for their timers. Scheduled tasks must only complete or start futures, never block.
+     */
+    static final ScheduledExecutorService SCHEDULER = createScheduler();
+
     public static <T> CompletableFuture<T> exceptionallyCompletedFuture(final Throwable throwable) {
         final CompletableFuture<T> future = new CompletableFuture<>();
         future.completeExceptionally(throwable);
         return future;
     }
 
-}
\ No newline at end of file
+    /**
+     * Hedged request: starts an attempt, and starts a backup attempt if the first one has not completed within the
+     * delay, or as soon as it fails. The first successful attempt wins and the other one is cancelled. Fails only if
+     * both attempts fail, with the Throwable of the one that failed last.
+     * No thread waits for the delay; the timer runs on a shared scheduler.
+     *
+     * @param attempt Starts one attempt each time it is called. Should return quickly, without blocking.
+     * @param delay   How long to wait for the first attempt. Successful attempts' latencies are recorded into it.
+     * @return A future of the first successful attempt's result. Cancelling it cancels the attempts.
+     */
+    public static <T> CompletableFuture<T> hedge(final Supplier<CompletableFuture<T>> attempt, final HedgeDelay delay) {
+        checkNotNull(attempt, "Attempt supplier is null.");
+        checkNotNull(delay, "Hedge delay is null.");
+        return new Hedge<>(attempt, delay).start();
+    }
+
+    /**
+     * Retries a call with exponential backoff and full jitter, as configured by the policy. Waits between attempts are
+     * timers on a shared scheduler; no thread is blocked while waiting.
+     *
+     * @param attempt Starts one attempt each time it is called. Should return quickly, without blocking.
+     * @param policy  Which failures to retry, how often and how long to wait.
+     * @return A future of the first successful attempt's result. If all attempts fail, it fails with the only
+     * attempt's Throwable or, after several attempts, with a RetriesExhaustedException carrying all of them. If the
+     * policy's deadline passes first, the running attempt is cancelled and the future fails with a
+     * DeadlineExceededException, as the last failure of a RetriesExhaustedException if earlier attempts failed.
+     * Cancelling it cancels the current attempt and stops retrying.
+     */
+    public static <T> CompletableFuture<T> retry(final Supplier<CompletableFuture<T>> attempt,
+                                                 final RetryPolicy policy) {
+        checkNotNull(attempt, "Attempt supplier is null.");
+        checkNotNull(policy, "Retry policy is null.");
+        return new Retry<>(attempt, policy).start();
+    }
+
+    /**
+     * Unfolds a paged API, such as S3 listings, into a lazy stream of pages. As soon as a page arrives, the request for
+     * the page after it is started, so fetching the next page overlaps with processing the current one. At most two
+     * pages are fetched ahead of the one being processed.
+     *
+     * @param first Starts the request for the first page when the stream is first consumed.
+     * @param next  Starts the request for the page after the given one, e.g. using its continuation token, or returns
+     *              an empty Optional if it was the last page.
+     * @return The pages in order. Consuming it blocks while a page is being fetched; a failed request ends it with a
+     * CompletionException. Closing it cancels the request in flight. To process pages without blocking a thread, use
+     * forEachPage.
+     */
+    public static <P> Stream<P> paginate(final Supplier<CompletableFuture<P>> first,
+                                         final Function<? super P, Optional<CompletableFuture<P>>> next) {
+        checkNotNull(first, "First page supplier is null.");
+        checkNotNull(next, "Next page function is null.");
+        final Pages<P> pages = new Pages<>(first, next);
+        return StreamSupport.stream(spliteratorUnknownSize(pages, ORDERED | NONNULL), false).onClose(pages::cancel);
+    }
+
+    /**
+     * Unfolds a paged API like paginate does, but hands each page to the consumer as soon as it arrives instead of
+     * waiting for it, so no thread is blocked between pages. The request for the next page is started before the
+     * consumer is called, so fetching it overlaps with processing the current one.
+     *
+     * @param first    Starts the request for the first page right away.
+     * @param next     Starts the request for the page after the given one, or returns an empty Optional if it was the
+     *                 last page.
+     * @param consumer Called with the pages in order, one at a time, on the thread that completed the page's request.
+     *                 Should return quickly, without blocking.
+     * @return A future that completes after the last page was consumed, or fails with the first failure of a request,
+     * next or the consumer. Cancelling it cancels the request in flight and consumes no further pages.
+     */
+    public static <P> CompletableFuture<Void> forEachPage(
+            final Supplier<CompletableFuture<P>> first, final Function<? super P, Optional<CompletableFuture<P>>> next,
+            final Consumer<? super P> consumer) {
+        checkNotNull(first, "First page supplier is null.");
+        checkNotNull(next, "Next page function is null.");
+        checkNotNull(consumer, "Page consumer is null.");
+        return new PageWalk<>(next, consumer).start(start(first));
+    }
+
+    /**
+     * @return The cause of a CompletionException or ExecutionException, as thrown by join and get, or the Throwable
+     * itself otherwise.
+     */
+    public static Throwable unwrap(final Throwable throwable) {
+        Throwable unwrapped = throwable;
+        while ((unwrapped instanceof CompletionException || unwrapped instanceof ExecutionException)
+                && unwrapped.getCause() != null) {
+            unwrapped = unwrapped.getCause();
+        }
+        return unwrapped;
+    }
+
+    /**
+     * Calls the supplier, turning a thrown exception or a null future into an exceptionally completed future.
+     */
+    static <T> CompletableFuture<T> start(final Supplier<CompletableFuture<T>> task) {
+        try {
+            final CompletableFuture<T> future = task.get();
+            return future != null ? future : exceptionallyCompletedFuture(new NullPointerException("Null future."));
+        } catch (final RuntimeException e) {
+            return exceptionallyCompletedFuture(e);
+        }
+    }
+
+    /**
+     * Like start, but calls the supplier on the executor. Fails if the executor rejects it.
+     */
+    static <T> CompletableFuture<T> startOn(final Executor executor, final Supplier<CompletableFuture<T>> task) {
+        try {
+            return CompletableFuture.supplyAsync(() -> start(task), executor).thenCompose(Function.identity());
+        } catch (final RejectedExecutionException e) {
+            return exceptionallyCompletedFuture(e);
+        }
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(
+                1, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("miniutils-futures-scheduler-%d").build());
+        scheduler.setRemoveOnCancelPolicy(true); // Most timers get cancelled; don't keep them queued until they expire.
+        return scheduler;
+    }
+
+    private static final class Hedge<T> {
+
+        private final Supplier<CompletableFuture<T>> attempt;
+        private final HedgeDelay delay;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicBoolean backupStarted = new AtomicBoolean();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile CompletableFuture<T> primary;
+        private volatile CompletableFuture<T> backup;
+        private volatile ScheduledFuture<?> timer;
+
+        private Hedge(final Supplier<CompletableFuture<T>> attempt, final HedgeDelay delay) {
+            this.attempt = attempt;
+            this.delay = delay;
+        }
+
+        private CompletableFuture<T> start() {
+            primary = run();
+            if (!primary.isDone()) {
+                timer = SCHEDULER.schedule(this::startBackup, delay.nanos(), NANOSECONDS);
+            }
+            result.whenComplete((value, throwable) -> cancelAll());
+            return result;
+        }
+
+        private void startBackup() {
+            if (!result.isDone() && backupStarted.compareAndSet(false, true)) {
+                backup = run();
+                if (result.isDone()) {
+                    backup.cancel(false);
+                }
+            }
+        }
+
+        private CompletableFuture<T> run() {
+            final long startNanos = System.nanoTime();
+            final CompletableFuture<T> future = Futures.start(attempt);
+            future.whenComplete((value, throwable) -> {
+                if (throwable == null) {
+                    if (result.complete(value)) {
+                        delay.record(System.nanoTime() - startNanos);
+                    }
+                } else if (failed.incrementAndGet() == 2) {
+                    result.completeExceptionally(throwable);
+                } else {
+                    startBackup();
+                }
+            });
+            return future;
+        }
+
+        private void cancelAll() {
+            final ScheduledFuture<?> currentTimer = timer;
+            if (currentTimer != null) {
+                currentTimer.cancel(false);
+            }
+            primary.cancel(false);
+            final CompletableFuture<T> currentBackup = backup;
+            if (currentBackup != null) {
+                currentBackup.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * The page to hand out next, and the request for the one after it, which is started as soon as the former arrives.
+     */
+    private static final class Pages<P> implements Iterator<P> {
+
+        private final Supplier<CompletableFuture<P>> first;
+        private final Function<? super P, Optional<CompletableFuture<P>>> next;
+        private CompletableFuture<P> current;
+        private CompletableFuture<Optional<CompletableFuture<P>>> following;
+        private boolean last;
+
+        private Pages(final Supplier<CompletableFuture<P>> first,
+                      final Function<? super P, Optional<CompletableFuture<P>>> next) {
+            this.first = first;
+            this.next = next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (current == null && !last) {
+                fetch(start(first));
+            }
+            return current != null;
+        }
+
+        @Override
+        public P next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final P page = current.join();
+            final Optional<CompletableFuture<P>> nextPage = following.join();
+            if (nextPage.isPresent()) {
+                fetch(nextPage.get());
+            } else {
+                current = null;
+                last = true;
+            }
+            return page;
+        }
+
+        private void fetch(final CompletableFuture<P> page) {
+            current = page;
+            following = page.thenApply(
+                    value -> checkNotNull(next.apply(value), "Next page function returned null."));
+        }
+
+        private void cancel() {
+            final CompletableFuture<P> inFlight = current;
+            if (inFlight != null) {
+                inFlight.cancel(false);
+                following.thenAccept(nextPage -> nextPage.ifPresent(page -> page.cancel(false)));
+            }
+        }
+    }
+
+    /**
+     * Consumes pages as their requests complete. Pages that have already arrived are consumed in a loop rather than
+     * from nested callbacks, so a long run of them doesn't grow the stack.
+     */
+    private static final class PageWalk<P> {
+
+        private final Function<? super P, Optional<CompletableFuture<P>>> next;
+        private final Consumer<? super P> consumer;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile CompletableFuture<P> current;
+
+        private PageWalk(final Function<? super P, Optional<CompletableFuture<P>>> next,
+                         final Consumer<? super P> consumer) {
+            this.next = next;
+            this.consumer = consumer;
+        }
+
+        private CompletableFuture<Void> start(final CompletableFuture<P> first) {
+            current = first;
+            done.whenComplete((value, throwable) -> current.cancel(false));
+            walk(first);
+            return done;
+        }
+
+        private void walk(final CompletableFuture<P> first) {
+            CompletableFuture<P> page = first;
+            while (page != null && !done.isDone()) {
+                if (!page.isDone()) {
+                    final CompletableFuture<P> pending = page;
+                    pending.whenComplete((value, throwable) -> walk(pending));
+                    return;
+                }
+                page = consume(page);
+            }
+        }
+
+        /**
+         * @return The request for the next page, or null if there is none or the walk has ended.
+         */
+        private CompletableFuture<P> consume(final CompletableFuture<P> page) {
+            try {
+                final P value = page.join();
+                final Optional<CompletableFuture<P>> following =
+                        checkNotNull(next.apply(value), "Next page function returned null.");
+                following.ifPresent(request -> current = request);
+                if (done.isDone()) {
+                    following.ifPresent(request -> request.cancel(false)); // Cancelled while next was running.
+                    return null;
+                }
+                consumer.accept(value);
+                if (!following.isPresent()) {
+                    done.complete(null);
+                }
+                return following.orElse(null);
+            } catch (final RuntimeException e) {
+                done.completeExceptionally(unwrap(e));
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Attempts run one after the other, but the deadline can expire while one is running, so the list of failures is
+     * guarded by this Retry.
+     */
+    private static final class Retry<T> {
+
+        private final Supplier<CompletableFuture<T>> attempt;
+        private final RetryPolicy policy;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final List<Throwable> failures = new ArrayList<>();
+        private final long startNanos = System.nanoTime();
+        private volatile CompletableFuture<T> current;
+        private volatile ScheduledFuture<?> deadline;
+
+        private Retry(final Supplier<CompletableFuture<T>> attempt, final RetryPolicy policy) {
+            this.attempt = attempt;
+            this.policy = policy;
+        }
+
+        private CompletableFuture<T> start() {
+            result.whenComplete((value, throwable) -> {
+                final ScheduledFuture<?> timer = deadline;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+                final CompletableFuture<T> running = current;
+                if (running != null) {
+                    running.cancel(false);
+                }
+            });
+            if (policy.getDeadlineNanos() != Long.MAX_VALUE) {
+                deadline = SCHEDULER.schedule(this::expire, policy.getDeadlineNanos(), NANOSECONDS);
+                if (result.isDone()) {
+                    deadline.cancel(false);
+                }
+            }
+            run();
+            return result;
+        }
+
+        private void run() {
+            if (result.isDone()) {
+                return;
+            }
+            final CompletableFuture<T> future = Futures.start(attempt);
+            current = future;
+            future.whenComplete((value, throwable) -> {
+                if (throwable == null) {
+                    result.complete(value);
+                } else {
+                    retryOrFail(throwable);
+                }
+            });
+            if (result.isDone()) {
+                future.cancel(false);
+            }
+        }
+
+        private synchronized void retryOrFail(final Throwable throwable) {
+            if (result.isDone()) {
+                return; // Cancelled, or the deadline expired during this attempt.
+            }
+            failures.add(throwable);
+            final long delayNanos = policy.nextDelayNanos(failures.size());
+            final boolean canRetry = failures.size() < policy.getMaxAttempts()
+                    && delayNanos < policy.getDeadlineNanos() - (System.nanoTime() - startNanos)
+                    && policy.shouldRetry(unwrap(throwable));
+            if (canRetry) {
+                SCHEDULER.schedule(this::run, delayNanos, NANOSECONDS);
+            } else {
+                fail();
+            }
+        }
+
+        private synchronized void expire() {
+            if (!result.isDone()) {
+                failures.add(new DeadlineExceededException());
+                fail();
+            }
+        }
+
+        private void fail() {
+            if (failures.size() == 1) {
+                result.completeExceptionally(failures.get(0));
+            } else {
+                result.completeExceptionally(new RetriesExhaustedException(failures));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * How long Futures.hedge waits for an attempt before starting a backup one. Either fixed, or a percentile of the
+ * latencies of recent successful attempts, tracked in a rolling window.
+ * A percentile-based delay keeps state, so share one instance between all calls to the same backend.
+ */
+@ThreadSafe
+public final class HedgeDelay {
+
+    private static final int WINDOW_SIZE = 1000;
+    private static final int MIN_SAMPLES = 100;
+
+    private final long fixedNanos;
+    private final double percentile;
+    private final AtomicReference<LatencyHistogram> current = new AtomicReference<>(new LatencyHistogram());
+    private volatile LatencyHistogram previous;
+
+    /**
+     * @return A delay that is always the same.
+     */
+    public static HedgeDelay fixed(final long delay, final TimeUnit unit) {
+        checkArgument(delay >= 0, "Delay can't be negative.");
+        checkNotNull(unit, "Unit is null.");
+        return new HedgeDelay(unit.toNanos(delay), Double.NaN);
+    }
+
+    /**
+     * @param percentile The percentile of recent successful attempt latencies to wait for, e.g. 0.95.
+     * @param fallback   The delay to use until 100 latencies have been seen.
+     * @param unit       Unit of the fallback delay.
+     * @return A delay that follows the latencies of the last complete window of 1000 successful attempts, or of those
+     * seen so far until the first window is complete.
+     */
+    public static HedgeDelay percentile(final double percentile, final long fallback, final TimeUnit unit) {
+        checkArgument(0 < percentile && percentile < 1, "Percentile must be in (0, 1).");
+        checkArgument(fallback >= 0, "Fallback delay can't be negative.");
+        checkNotNull(unit, "Unit is null.");
+        return new HedgeDelay(unit.toNanos(fallback), percentile);
+    }
+
+    private HedgeDelay(final long fixedNanos, final double percentile) {
+        this.fixedNanos = fixedNanos;
+        this.percentile = percentile;
+    }
+
+    long nanos() {
+        if (isFixed()) {
+            return fixedNanos;
+        }
+        final LatencyHistogram full = previous;
+        if (full != null) {
+            return full.getPercentile(percentile);
+        }
+        final LatencyHistogram filling = current.get();
+        return filling.getCount() >= MIN_SAMPLES ? filling.getPercentile(percentile) : fixedNanos;
+    }
+
+    /**
+     * Records the latency of a successful attempt. Once the current window is full, it replaces the previous one.
+     */
+    void record(final long latencyNanos) {
+        if (isFixed()) {
+            return;
+        }
+        final LatencyHistogram histogram = current.get();
+        if (histogram.record(latencyNanos) == WINDOW_SIZE && current.compareAndSet(histogram, new LatencyHistogram())) {
+            previous = histogram;
+        }
+    }
+
+    private boolean isFixed() {
+        return Double.isNaN(percentile);
+    }
+
+    @Override
+    public String toString() {
+        return isFixed() ? "HedgeDelay{fixed=" + fixedNanos + "ns}"
+                         : "HedgeDelay{percentile=" + percentile + ", current=" + nanos() + "ns}";
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Index-aligned results of a FanIn: get(i) is the result of the i-th future, so callers don't need to wrap results
+ * in tuples to know which request produced them.
+ */
+@Immutable
+public class IndexedFanInResult<T> extends AbstractIndexedFanInResult {
+
+    private final Object[] values;
+
+    IndexedFanInResult(final ResultSlots<T> slots) {
+        super(slots);
+        values = new Object[size()];
+        for (final int index : successfulIndices()) {
+            values[index] = slots.getSuccessful(index);
+        }
+    }
+
+    /**
+     * @return The result of the index-th future.
+     * @throws IllegalStateException If that future did not complete successfully.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(final int index) {
+        checkSuccessful(index);
+        return (T) values[index];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IndexedFanInResult{size=%d, succeeded=%d}", size(), getSuccessfulCount());
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Index-aligned int results of a FanIn, stored unboxed in an int[].
+ */
+@Immutable
+public class IntFanInResult extends AbstractIndexedFanInResult {
+
+    private final int[] values;
+
+    <T> IntFanInResult(final ResultSlots<T> slots, final ToIntFunction<? super T> mapper) {
+        super(slots);
+        values = new int[size()];
+        for (final int index : successfulIndices()) {
+            values[index] = mapper.applyAsInt(slots.getSuccessful(index));
+        }
+    }
+
+    /**
+     * @return The int result of the index-th future.
+     * @throws IllegalStateException If that future did not complete successfully.
+     */
+    public int getInt(final int index) {
+        checkSuccessful(index);
+        return values[index];
+    }
+
+    /**
+     * @return The results of the successful futures, in the order of the futures.
+     */
+    public IntStream getSuccessful() {
+        return Arrays.stream(successfulIndices()).map(index -> values[index]);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IntFanInResult{size=%d, succeeded=%d}", size(), getSuccessfulCount());
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+import java.util.stream.LongStream;
+
+/**
+ * Index-aligned long results of a FanIn, stored unboxed in a long[].
+ */
+@Immutable
+public class LongFanInResult extends AbstractIndexedFanInResult {
+
+    private final long[] values;
+
+    <T> LongFanInResult(final ResultSlots<T> slots, final ToLongFunction<? super T> mapper) {
+        super(slots);
+        values = new long[size()];
+        for (final int index : successfulIndices()) {
+            values[index] = mapper.applyAsLong(slots.getSuccessful(index));
+        }
+    }
+
+    /**
+     * @return The long result of the index-th future.
+     * @throws IllegalStateException If that future did not complete successfully.
+     */
+    public long getLong(final int index) {
+        checkSuccessful(index);
+        return values[index];
+    }
+
+    /**
+     * @return The results of the successful futures, in the order of the futures.
+     */
+    public LongStream getSuccessful() {
+        return Arrays.stream(successfulIndices()).mapToLong(index -> values[index]);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LongFanInResult{size=%d, succeeded=%d}", size(), getSuccessfulCount());
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.vosmann.miniutils.futures;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Describes a chain of asynchronous stages, e.g. list, download, parse, upload, through which elements flow one by
+ * one: each element moves on to the next stage as soon as it is ready, without waiting for the rest of its stage.
+ * Every stage runs at most parallelism elements at once and buffers at most queueBound elements waiting for it. When
+ * a stage's buffer is full, the stage before it stops starting new work, so memory stays bounded from the source to
+ * the last stage.
+ * <p>
+ * Elements that fail in a stage leave the pipeline; their Throwables are collected as StageExceptions naming the
+ * stage. Adding a stage returns a new pipeline, which shares the source, so a source can only be run once.
+ *
+ * @param <T> Type of the elements coming out of the last stage.
+ */
+public class Pipeline<T> {
+
+    private final Iterator<?> source;
+    private final List<Stage> stages;
+
+    /**
+     * @param source Elements to feed into the first stage. Consumed lazily, only when the first stage has room.
+     */
+    public static <T> Pipeline<T> from(final Stream<T> source) {
+        checkNotNull(source, "Source is null.");
+        return new Pipeline<>(source.iterator(), ImmutableList.of());
+    }
+
+    private Pipeline(final Iterator<?> source, final List<Stage> stages) {
+        this.source = source;
+        this.stages = stages;
+    }
+
+    /**
+     * @param name        Names the stage in StageExceptions and StageStats.
+     * @param parallelism Maximum number of elements processed by this stage at the same time.
+     * @param queueBound  Maximum number of elements waiting for this stage.
+     * @param function    Starts processing one element. Should return quickly, without blocking.
+     * @return A new pipeline with the stage appended.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> Pipeline<R> then(final String name, final int parallelism, final int queueBound,
+                                final Function<? super T, CompletableFuture<R>> function) {
+        checkNotNull(name, "Stage name is null.");
+        checkArgument(parallelism > 0, "Parallelism must be positive.");
+        checkArgument(queueBound > 0, "Queue bound must be positive.");
+        checkNotNull(function, "Stage function is null.");
+        final Stage stage = new Stage(name, parallelism, queueBound,
+                                      element -> (CompletableFuture<Object>) function.apply((T) element));
+        return new Pipeline<>(source, ImmutableList.<Stage>builder().addAll(stages).add(stage).build());
+    }
+
+    /**
+     * Starts pulling from the source.
+     *
+     * @return The run, which has the future of the final result and live per-stage statistics.
+     */
+    public PipelineRun<T> run() {
+        checkState(!stages.isEmpty(), "Pipeline has no stages.");
+        final PipelineRun<T> run = new PipelineRun<>(source, stages);
+        run.start();
+        return run;
+    }
+
+    static final class Stage {
+
+        final String name;
+        final int parallelism;
+        final int queueBound;
+        final Function<Object, CompletableFuture<Object>> function;
+
+        private Stage(final String name, final int parallelism, final int queueBound,
+                      final Function<Object, CompletableFuture<Object>> function) {
+            this.name = name;
+            this.parallelism = parallelism;
+            this.queueBound = queueBound;
+            this.function = function;
+        }
+    }
+
+}
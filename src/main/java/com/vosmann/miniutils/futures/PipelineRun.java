@@ -0,0 +1,196 @@
+package com.vosmann.miniutils.futures;
+
+import com.google.common.collect.ImmutableList;
+import com.vosmann.miniutils.futures.Pipeline.Stage;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * One run of a Pipeline.
+ * <p>
+ * Like BoundedLauncher, moving elements between stages is serialized by a work-in-progress counter instead of a lock:
+ * completing futures only queue their outcome, and whichever thread finds the counter at zero hands the outcomes to
+ * the next stages and starts new work for everybody. The stages' queues are only accessed by that thread.
+ */
+@ThreadSafe
+public class PipelineRun<T> {
+
+    private static final Object NULL = new Object(); // Stands in for null elements, which queues don't accept.
+
+    private final Iterator<?> source;
+    private final List<StageState> stages;
+    private final List<StageStats> stats;
+    private final FanInResult.Builder<T> builder = new FanInResult.Builder<>();
+    private final CompletableFuture<FanInResult<T>> result = new CompletableFuture<>();
+
+    private final AtomicInteger workInProgress = new AtomicInteger();
+    private final Queue<Outcome> outcomes = new ConcurrentLinkedQueue<>();
+    private boolean exhausted; // Only accessed by the thread currently draining.
+
+    PipelineRun(final Iterator<?> source, final List<Stage> stages) {
+        this.source = source;
+        this.stages = stages.stream().map(StageState::new).collect(toList());
+        this.stats = ImmutableList.copyOf(this.stages.stream().map(stage -> stage.stats).iterator());
+    }
+
+    /**
+     * @return A future of the last stage's results, plus the StageExceptions of elements that failed in any stage.
+     * Completes once the source is exhausted and every element has left the pipeline. Fails if the source throws.
+     * Cancelling it stops the pipeline from starting new work.
+     */
+    public CompletableFuture<FanInResult<T>> getResult() {
+        return result;
+    }
+
+    /**
+     * @return Live statistics, one per stage, in stage order.
+     */
+    public List<StageStats> getStats() {
+        return stats;
+    }
+
+    void start() {
+        drain();
+    }
+
+    private void drain() {
+        if (workInProgress.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            try {
+                Outcome outcome;
+                while ((outcome = outcomes.poll()) != null) {
+                    handle(outcome);
+                }
+                boolean progress;
+                do {
+                    progress = false;
+                    for (int i = 0; i < stages.size() && !result.isDone(); ++i) {
+                        progress |= advance(i);
+                    }
+                } while (progress);
+            } catch (final RuntimeException e) {
+                exhausted = true;
+                result.completeExceptionally(e);
+            }
+            if (exhausted && isEmpty()) {
+                result.complete(builder.build());
+            }
+        } while (workInProgress.decrementAndGet() != 0);
+    }
+
+    /**
+     * Fills the stage's queue from the source if it is the first one, starts as much of its queue as its parallelism
+     * allows, and hands its finished elements to the next stage as far as that one's queue bound allows.
+     */
+    private boolean advance(final int index) {
+        final StageState stage = stages.get(index);
+        boolean progress = false;
+        if (index == 0) {
+            while (!exhausted && stage.queue.size() < stage.config.queueBound) {
+                if (source.hasNext()) {
+                    stage.queue.add(wrap(source.next()));
+                    progress = true;
+                } else {
+                    exhausted = true;
+                }
+            }
+        }
+        // Finished elements that the next stage has not taken yet count against parallelism, which bounds them.
+        while (stage.running + stage.finished.size() < stage.config.parallelism && !stage.queue.isEmpty()) {
+            launch(index, unwrap(stage.queue.poll()));
+            progress = true;
+        }
+        final StageState next = index + 1 < stages.size() ? stages.get(index + 1) : null;
+        while (!stage.finished.isEmpty() && (next == null || next.queue.size() < next.config.queueBound)) {
+            final Object element = stage.finished.poll();
+            if (next == null) {
+                builder.add(this.<T>cast(unwrap(element)));
+            } else {
+                next.queue.add(element);
+            }
+            progress = true;
+        }
+        stage.stats.setQueued(stage.queue.size());
+        stage.stats.setWaitingForNext(stage.finished.size());
+        return progress;
+    }
+
+    private void launch(final int index, final Object element) {
+        final StageState stage = stages.get(index);
+        ++stage.running;
+        stage.stats.onStarted();
+        Futures.start(() -> stage.config.function.apply(element)).whenComplete((output, throwable) -> {
+            outcomes.add(new Outcome(index, output, throwable));
+            drain();
+        });
+    }
+
+    private void handle(final Outcome outcome) {
+        final StageState stage = stages.get(outcome.stage);
+        --stage.running;
+        if (outcome.throwable == null) {
+            stage.stats.onSucceeded();
+            stage.finished.add(wrap(outcome.output));
+        } else {
+            stage.stats.onFailed();
+            builder.add(new StageException(stage.config.name, Futures.unwrap(outcome.throwable)));
+        }
+    }
+
+    private boolean isEmpty() {
+        return stages.stream().allMatch(stage -> stage.queue.isEmpty() && stage.running == 0
+                && stage.finished.isEmpty());
+    }
+
+    private static Object wrap(final Object element) {
+        return element != null ? element : NULL;
+    }
+
+    private static Object unwrap(final Object element) {
+        return element != NULL ? element : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E> E cast(final Object element) {
+        return (E) element;
+    }
+
+    private static final class StageState {
+
+        private final Stage config;
+        private final StageStats stats;
+        private final Queue<Object> queue = new ArrayDeque<>();
+        private final Queue<Object> finished = new ArrayDeque<>();
+        private int running;
+
+        private StageState(final Stage config) {
+            this.config = config;
+            this.stats = new StageStats(config.name, config.parallelism);
+        }
+    }
+
+    private static final class Outcome {
+
+        private final int stage;
+        private final Object output;
+        private final Throwable throwable;
+
+        private Outcome(final int stage, final Object output, final Throwable throwable) {
+            this.stage = stage;
+            this.output = output;
+            this.throwable = throwable;
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.vosmann.miniutils.futures;
+
+/**
+ * Classes of work that a PriorityExecutor shares its threads between.
+ */
+public enum Priority {
+
+    /**
+     * Work somebody is waiting for, e.g. reads serving a request.
+     */
+    INTERACTIVE,
+
+    DEFAULT,
+
+    /**
+     * Background work that should only use spare capacity, e.g. nightly deletions and uploads.
+     */
+    BULK
+
+}
@@ -0,0 +1,242 @@
+package com.vosmann.miniutils.futures;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Fixed pool of threads shared between priority classes by weighted fair queuing. Each class has its own queue, and
+ * threads pick from the classes by stride scheduling: a class is picked in proportion to its weight whenever several
+ * have tasks waiting, and an idle class's share goes to the busy ones. With the default weights, interactive work
+ * gets 64 times as many turns as bulk work, while bulk work still runs whenever nothing else waits, and never
+ * starves.
+ * <p>
+ * A class that was idle resumes at the current virtual time instead of its old pass, so idling does not build up
+ * credit for a burst later. Queue depths and the time tasks waited before running are tracked per class.
+ */
+@ThreadSafe
+public class PriorityExecutor implements Executor {
+
+    private static final long STRIDE_SCALE = 1 << 20;
+
+    private final Map<Priority, PriorityClass> classes = new EnumMap<>(Priority.class);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    // Guarded by lock.
+    private long virtualTime;
+    private int queued;
+    private boolean shutdown;
+
+    private PriorityExecutor(final Builder builder) {
+        for (final Priority priority : Priority.values()) {
+            classes.put(priority, new PriorityClass(STRIDE_SCALE / builder.weights.get(priority)));
+        }
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true)
+                                                                      .setNameFormat(builder.name + "-%d")
+                                                                      .build();
+        for (int i = 0; i < builder.threads; ++i) {
+            threadFactory.newThread(this::work).start();
+        }
+    }
+
+    public static final class Builder {
+        private final Map<Priority, Integer> weights = new EnumMap<>(Priority.class);
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private String name = "miniutils-priority";
+
+        public Builder() {
+            weights.put(Priority.INTERACTIVE, 64);
+            weights.put(Priority.DEFAULT, 8);
+            weights.put(Priority.BULK, 1);
+        }
+
+        public Builder threads(final int threads) {
+            checkArgument(threads > 0, "Thread count must be positive.");
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param weight The class's share of turns relative to the other classes' weights. By default, 64 for
+         *               INTERACTIVE, 8 for DEFAULT and 1 for BULK.
+         */
+        public Builder weight(final Priority priority, final int weight) {
+            checkNotNull(priority, "Priority is null.");
+            checkArgument(0 < weight && weight <= STRIDE_SCALE, "Weight must be in [1, 2^20].");
+            weights.put(priority, weight);
+            return this;
+        }
+
+        /**
+         * @param name Prefix of the worker threads' names.
+         */
+        public Builder name(final String name) {
+            checkNotNull(name, "Name is null.");
+            this.name = name;
+            return this;
+        }
+
+        public PriorityExecutor build() {
+            return new PriorityExecutor(this);
+        }
+    }
+
+    /**
+     * Runs the task with DEFAULT priority.
+     */
+    @Override
+    public void execute(final Runnable task) {
+        execute(Priority.DEFAULT, task);
+    }
+
+    public void execute(final Priority priority, final Runnable task) {
+        checkNotNull(priority, "Priority is null.");
+        checkNotNull(task, "Task is null.");
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor is shut down.");
+            }
+            final PriorityClass priorityClass = classes.get(priority);
+            if (priorityClass.tasks.isEmpty()) {
+                priorityClass.pass = Math.max(priorityClass.pass, virtualTime);
+            }
+            priorityClass.tasks.add(new Task(task, System.nanoTime()));
+            ++queued;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return A view that runs everything with the given priority, e.g. for CompletableFuture's async methods.
+     */
+    public Executor withPriority(final Priority priority) {
+        checkNotNull(priority, "Priority is null.");
+        return task -> execute(priority, task);
+    }
+
+    /**
+     * Makes a task start on this executor with the given priority, e.g. for FanIn.bounded:
+     * {@code FanIn.bounded(tasks.map(task -> executor.wrap(Priority.BULK, task)), maxInFlight)}.
+     */
+    public <T> Supplier<CompletableFuture<T>> wrap(final Priority priority,
+                                                  final Supplier<CompletableFuture<T>> task) {
+        checkNotNull(priority, "Priority is null.");
+        checkNotNull(task, "Task is null.");
+        final Executor executor = withPriority(priority);
+        return () -> Futures.startOn(executor, task);
+    }
+
+    public int getQueueDepth(final Priority priority) {
+        checkNotNull(priority, "Priority is null.");
+        lock.lock();
+        try {
+            return classes.get(priority).tasks.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Live histogram of how long the class's tasks waited in the queue, in nanoseconds.
+     */
+    public LatencyHistogram getWaitTimes(final Priority priority) {
+        checkNotNull(priority, "Priority is null.");
+        return classes.get(priority).waitTimes;
+    }
+
+    /**
+     * Rejects new tasks. Tasks already queued still run, after which the threads end.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        Runnable task;
+        while ((task = take()) != null) {
+            try {
+                task.run();
+            } catch (final RuntimeException | Error e) {
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * @return The next task by stride scheduling, or null once shut down and drained.
+     */
+    private Runnable take() {
+        lock.lock();
+        try {
+            while (queued == 0) {
+                if (shutdown) {
+                    return null;
+                }
+                notEmpty.awaitUninterruptibly();
+            }
+            PriorityClass next = null;
+            for (final PriorityClass priorityClass : classes.values()) {
+                if (!priorityClass.tasks.isEmpty() && (next == null || priorityClass.pass < next.pass)) {
+                    next = priorityClass;
+                }
+            }
+            virtualTime = next.pass;
+            next.pass += next.stride;
+            --queued;
+            final Task task = next.tasks.poll();
+            next.waitTimes.record(System.nanoTime() - task.enqueuedNanos);
+            return task.runnable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class PriorityClass {
+
+        private final long stride;
+        private final Queue<Task> tasks = new ArrayDeque<>();
+        private final LatencyHistogram waitTimes = new LatencyHistogram();
+        private long pass;
+
+        private PriorityClass(final long stride) {
+            this.stride = stride;
+        }
+    }
+
+    private static final class Task {
+
+        private final Runnable runnable;
+        private final long enqueuedNanos;
+
+        private Task(final Runnable runnable, final long enqueuedNanos) {
+            this.runnable = runnable;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.vosmann.miniutils.futures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free accumulator for a fan-in of known size. Each future writes only to the slot at its own position, so
+ * completing threads never contend with each other and nothing has to be regrown. Every slot is written at most once.
+ * Building is a single pass over the slots; successful results keep the order of their futures.
+ */
+final class ResultSlots<T> {
+
+    private static final Object NULL = new Object(); // Stands in for null results; an empty slot is a real null.
+
+    private final AtomicReferenceArray<Object> slots;
+
+    ResultSlots(final int size) {
+        slots = new AtomicReferenceArray<>(size);
+    }
+
+    private ResultSlots(final Object[] slots) {
+        this.slots = new AtomicReferenceArray<>(slots);
+    }
+
+    void setSuccessful(final int index, final T result) {
+        slots.lazySet(index, result == null ? NULL : result);
+    }
+
+    void setThrowable(final int index, final Throwable throwable) {
+        slots.lazySet(index, new Failure(throwable));
+    }
+
+    /**
+     * @return A copy of the slots as they are now, which later writes to this one don't change.
+     */
+    ResultSlots<T> copy() {
+        final Object[] copy = new Object[slots.length()];
+        for (int i = 0; i < copy.length; ++i) {
+            copy[i] = slots.get(i);
+        }
+        return new ResultSlots<>(copy);
+    }
+
+    int size() {
+        return slots.length();
+    }
+
+    boolean isSuccessful(final int index) {
+        final Object slot = slots.get(index);
+        return slot != null && !(slot instanceof Failure);
+    }
+
+    /**
+     * @return The result in a slot for which isSuccessful was true.
+     */
+    @SuppressWarnings("unchecked")
+    T getSuccessful(final int index) {
+        final Object slot = slots.get(index);
+        return slot == NULL ? null : (T) slot;
+    }
+
+    /**
+     * @return The Throwable in the slot, or null if the slot is empty or successful.
+     */
+    Throwable getThrowable(final int index) {
+        final Object slot = slots.get(index);
+        return slot instanceof Failure ? ((Failure) slot).throwable : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    FanInResult<T> build() {
+        final List<T> successful = new ArrayList<>(slots.length());
+        final List<Throwable> throwables = new ArrayList<>();
+        for (int i = 0; i < slots.length(); ++i) {
+            final Object slot = slots.get(i);
+            if (slot instanceof Failure) {
+                throwables.add(((Failure) slot).throwable);
+            } else if (slot == NULL) {
+                successful.add(null);
+            } else if (slot != null) {
+                successful.add((T) slot);
+            }
+        }
+        return new FanInResult<>(successful, throwables);
+    }
+
+    private static final class Failure {
+
+        private final Throwable throwable;
+
+        private Failure(final Throwable throwable) {
+            this.throwable = throwable;
+        }
+    }
+
+}
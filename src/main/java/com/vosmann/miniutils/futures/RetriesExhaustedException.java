@@ -0,0 +1,24 @@
+package com.vosmann.miniutils.futures;
+
+import java.util.List;
+
+/**
+ * Failure of a call that was retried. The cause is the last attempt's failure; the failures of the earlier attempts
+ * are attached as suppressed exceptions, so the whole attempt history shows up in a FanInResult's throwables and in
+ * stack traces.
+ */
+public class RetriesExhaustedException extends RuntimeException {
+
+    private final int attempts;
+
+    RetriesExhaustedException(final List<Throwable> failures) {
+        super("Gave up after " + failures.size() + " attempts.", failures.get(failures.size() - 1));
+        this.attempts = failures.size();
+        failures.subList(0, failures.size() - 1).forEach(this::addSuppressed);
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * When and how often Futures.retry tries again. Waits between attempts grow exponentially and use full jitter: each
+ * wait is drawn uniformly from [0, min(maxDelay, baseDelay * 2^(attempt - 1))], so that many callers failing at the
+ * same moment don't retry in lockstep.
+ */
+@Immutable
+public class RetryPolicy {
+
+    /**
+     * Longer waits are cut to this, so that jitter bounds and deadline arithmetic can't overflow. Still 146 years.
+     */
+    private static final long MAX_DELAY_NANOS = Long.MAX_VALUE / 2;
+
+    private final Predicate<? super Throwable> retryOn;
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final long deadlineNanos;
+
+    private RetryPolicy(final Builder builder) {
+        retryOn = builder.retryOn;
+        maxAttempts = builder.maxAttempts;
+        baseDelayNanos = builder.baseDelayNanos;
+        maxDelayNanos = builder.maxDelayNanos;
+        deadlineNanos = builder.deadlineNanos;
+        checkArgument(baseDelayNanos <= maxDelayNanos, "Base delay can't be larger than max delay.");
+    }
+
+    public static final class Builder {
+        private Predicate<? super Throwable> retryOn = throwable -> true;
+        private int maxAttempts = 3;
+        private long baseDelayNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        private long maxDelayNanos = TimeUnit.SECONDS.toNanos(10);
+        private long deadlineNanos = Long.MAX_VALUE;
+
+        /**
+         * @param retryOn Decides whether a failure is worth another attempt. Receives the failure unwrapped from any
+         *                CompletionException. Retries every failure by default.
+         */
+        public Builder retryOn(final Predicate<? super Throwable> retryOn) {
+            checkNotNull(retryOn, "Retry predicate is null.");
+            this.retryOn = retryOn;
+            return this;
+        }
+
+        /**
+         * @param maxAttempts Attempts in total, including the first one. 3 by default.
+         */
+        public Builder maxAttempts(final int maxAttempts) {
+            checkArgument(maxAttempts > 0, "Max attempts must be positive.");
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param baseDelay Upper bound of the first wait; doubles with each further attempt. 100 ms by default.
+         * @param maxDelay  Cap on the upper bound of any wait. 10 s by default.
+         */
+        public Builder backoff(final long baseDelay, final long maxDelay, final TimeUnit unit) {
+            checkArgument(baseDelay >= 0, "Base delay can't be negative.");
+            checkArgument(maxDelay >= 0, "Max delay can't be negative.");
+            checkNotNull(unit, "Unit is null.");
+            this.baseDelayNanos = Math.min(unit.toNanos(baseDelay), MAX_DELAY_NANOS);
+            this.maxDelayNanos = Math.min(unit.toNanos(maxDelay), MAX_DELAY_NANOS);
+            return this;
+        }
+
+        /**
+         * @param deadline Time after the first attempt's start by which the retried call has to have succeeded. When
+         *                 it passes, the running attempt is cancelled and no further attempt is started. None by
+         *                 default.
+         */
+        public Builder deadline(final long deadline, final TimeUnit unit) {
+            checkArgument(deadline > 0, "Deadline must be positive.");
+            checkNotNull(unit, "Unit is null.");
+            this.deadlineNanos = unit.toNanos(deadline);
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+
+    boolean shouldRetry(final Throwable throwable) {
+        return retryOn.test(throwable);
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * @param attempt The number of the attempt that just failed, starting at 1.
+     * @return A jittered wait before the next attempt.
+     */
+    long nextDelayNanos(final int attempt) {
+        final int doublings = Math.min(attempt - 1, 62);
+        final long ceiling = baseDelayNanos > (maxDelayNanos >> doublings) ? maxDelayNanos
+                                                                           : baseDelayNanos << doublings;
+        return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{maxAttempts=" + maxAttempts + ", baseDelayNanos=" + baseDelayNanos
+                + ", maxDelayNanos=" + maxDelayNanos + ", deadlineNanos=" + deadlineNanos + '}';
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.vosmann.miniutils.futures;
+
+/**
+ * Failure of an element in a Pipeline stage. The cause is what the stage's future failed with.
+ */
+public class StageException extends RuntimeException {
+
+    private final String stage;
+
+    StageException(final String stage, final Throwable cause) {
+        super("Stage " + stage + " failed: " + cause, cause);
+        this.stage = stage;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.vosmann.miniutils.futures;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters of one Pipeline stage. A stage whose queue stays full while the next one's stays empty is the
+ * bottleneck; so is one that keeps all of its parallelism busy while the stages after it idle.
+ */
+@ThreadSafe
+public class StageStats {
+
+    private final String name;
+    private final int parallelism;
+    private final long startNanos = System.nanoTime();
+
+    // Updated by whichever thread drains the run, read by any thread at any time.
+    private volatile int queued;
+    private volatile int waitingForNext;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    StageStats(final String name, final int parallelism) {
+        this.name = name;
+        this.parallelism = parallelism;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return Elements waiting for this stage.
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * @return Elements being processed by this stage.
+     */
+    public int getRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return Elements done with this stage but not yet taken by the next one because its queue is full.
+     */
+    public int getWaitingForNext() {
+        return waitingForNext;
+    }
+
+    public long getStarted() {
+        return started.get();
+    }
+
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return Elements completed per second since the run started.
+     */
+    public double getThroughput() {
+        final double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? (succeeded.get() + failed.get()) / seconds : 0;
+    }
+
+    void setQueued(final int queued) {
+        this.queued = queued;
+    }
+
+    void setWaitingForNext(final int waitingForNext) {
+        this.waitingForNext = waitingForNext;
+    }
+
+    void onStarted() {
+        started.incrementAndGet();
+        running.incrementAndGet();
+    }
+
+    void onSucceeded() {
+        succeeded.incrementAndGet();
+        running.decrementAndGet();
+    }
+
+    void onFailed() {
+        failed.incrementAndGet();
+        running.decrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StageStats{name=%s, parallelism=%d, queued=%d, running=%d, waitingForNext=%d, "
+                                     + "started=%d, succeeded=%d, failed=%d, throughput=%.1f/s}",
+                             name, parallelism, queued, running.get(), waitingForNext, started.get(), succeeded.get(),
+                             failed.get(), getThroughput());
+    }
+
+}
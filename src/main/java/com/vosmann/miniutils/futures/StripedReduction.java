@@ -0,0 +1,86 @@
+package com.vosmann.miniutils.futures;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collector;
+
+/**
+ * Reduces results and Throwables with two Collectors while they arrive on many threads. Instead of one global lock,
+ * there is one pair of containers per stripe, and a thread only locks the stripe it hashes to. Memory is bounded by
+ * the number of stripes, not the number of elements. The stripes are combined when finishing, so the collectors see
+ * the elements in no particular order.
+ */
+final class StripedReduction<T, A, R, B, E> {
+
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    private final Collector<? super T, A, R> successCollector;
+    private final Collector<? super Throwable, B, E> failureCollector;
+    private final Stripe<A, B>[] stripes;
+    private final LongAdder successful = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    StripedReduction(final Collector<? super T, A, R> successCollector,
+                     final Collector<? super Throwable, B, E> failureCollector) {
+        this.successCollector = successCollector;
+        this.failureCollector = failureCollector;
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; ++i) {
+            stripes[i] = new Stripe<>(successCollector.supplier().get(), failureCollector.supplier().get());
+        }
+    }
+
+    void add(final T result) {
+        final Stripe<A, B> stripe = stripe();
+        synchronized (stripe) {
+            successCollector.accumulator().accept(stripe.successes, result);
+        }
+        successful.increment();
+    }
+
+    void add(final Throwable throwable) {
+        final Stripe<A, B> stripe = stripe();
+        synchronized (stripe) {
+            failureCollector.accumulator().accept(stripe.failures, throwable);
+        }
+        failed.increment();
+    }
+
+    /**
+     * Must only be called after the last add has returned.
+     */
+    FanInReduction<R, E> finish() {
+        A successes;
+        B failures;
+        synchronized (stripes[0]) {
+            successes = stripes[0].successes;
+            failures = stripes[0].failures;
+        }
+        for (int i = 1; i < STRIPES; ++i) {
+            synchronized (stripes[i]) {
+                successes = successCollector.combiner().apply(successes, stripes[i].successes);
+                failures = failureCollector.combiner().apply(failures, stripes[i].failures);
+            }
+        }
+        return new FanInReduction<>(successCollector.finisher().apply(successes),
+                                    failureCollector.finisher().apply(failures),
+                                    successful.sum(), failed.sum());
+    }
+
+    private Stripe<A, B> stripe() {
+        final long id = Thread.currentThread().getId();
+        return stripes[(int) (id ^ (id >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe<A, B> {
+
+        private final A successes;
+        private final B failures;
+
+        private Stripe(final A successes, final B failures) {
+            this.successes = successes;
+            this.failures = failures;
+        }
+    }
+
+}
@@ -1,34 +1,232 @@
 package com.vosmann.miniutils.s3;
 
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.vosmann.miniutils.futures.BlockingExecutors;
+import com.vosmann.miniutils.futures.FanIn;
+import com.vosmann.miniutils.futures.FanInResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 
+/**
+ * Deletes objects with multi-object delete requests of up to 1000 keys, several of them in flight at once. Batches
+ * are cut from the summaries as earlier ones complete, so a streamed listing, e.g. Lister.stream, is deleted without
+ * ever holding all of its keys.
+ * <p>
+ * A failed key doesn't stop the deletion: start returns what happened to every key, and run logs the failures.
+ */
 public class Deletion implements Runnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(Deletion.class);
+    private static final int MAX_BATCH_SIZE = 1000;
 
-    private final Listing listing;
+    private final Stream<S3ObjectSummary> summaries;
     private final AmazonS3Client client;
+    private final int batchSize;
+    private final int batchesInFlight;
+    private final Executor executor;
+    private final Object source; // Only for logging, which calls its toString.
 
     public Deletion(final Listing listing, final AmazonS3Client client) {
-        checkNotNull(listing, "Listing is null.");
-        checkNotNull(client, "S3 client is null.");
-        this.listing = listing;
-        this.client = client;
+        this(new Builder().listing(listing).client(client));
+    }
+
+    private Deletion(final Builder builder) {
+        checkNotNull(builder.summaries, "Summaries are not set.");
+        checkNotNull(builder.client, "S3 client is not set.");
+        summaries = builder.summaries;
+        client = builder.client;
+        batchSize = builder.batchSize;
+        batchesInFlight = builder.batchesInFlight;
+        executor = builder.executor;
+        source = builder.source;
+    }
+
+    public static final class Builder {
+        private Stream<S3ObjectSummary> summaries;
+        private AmazonS3Client client;
+        private int batchSize = MAX_BATCH_SIZE;
+        private int batchesInFlight = 4;
+        private Executor executor = BlockingExecutors.shared();
+        private Object source;
+
+        public Builder listing(final Listing listing) {
+            checkNotNull(listing, "Listing is null.");
+            this.summaries = listing.get().stream();
+            this.source = listing;
+            return this;
+        }
+
+        /**
+         * @param summaries Consumed lazily, one batch at a time, e.g. from Lister.stream. Closed once deleted.
+         */
+        public Builder summaries(final Stream<S3ObjectSummary> summaries) {
+            checkNotNull(summaries, "Summaries are null.");
+            this.summaries = summaries;
+            this.source = "streamed summaries";
+            return this;
+        }
+
+        public Builder client(final AmazonS3Client client) {
+            checkNotNull(client, "S3 client is null.");
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * @param batchSize Keys per request; S3 takes at most 1000, which is the default.
+         */
+        public Builder batchSize(final int batchSize) {
+            checkArgument(batchSize > 0 && batchSize <= MAX_BATCH_SIZE, "Batch size must be 1 to 1000.");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param batchesInFlight How many requests run at the same time. 4 by default.
+         */
+        public Builder batchesInFlight(final int batchesInFlight) {
+            checkArgument(batchesInFlight > 0, "Batches in flight must be positive.");
+            this.batchesInFlight = batchesInFlight;
+            return this;
+        }
+
+        /**
+         * @param executor Runs the blocking requests. BlockingExecutors.shared() by default.
+         */
+        public Builder executor(final Executor executor) {
+            checkNotNull(executor, "Executor is null.");
+            this.executor = executor;
+            return this;
+        }
+
+        public Deletion build() {
+            return new Deletion(this);
+        }
     }
 
     @Override
     public void run() {
         try {
-            for (final S3ObjectSummary summary : listing.get()) {
-                client.deleteObject(summary.getBucketName(), summary.getKey());
+            final FanInResult<Integer> result = start().join();
+            if (result.hasThrowables()) {
+                LOG.error("Could not delete {} keys of {}, e.g. {}", result.getThrowables().size(), source,
+                          result.getThrowables().get(0));
             }
         } catch (final RuntimeException e) {
-            LOG.error("Could not delete {}.", listing);
+            LOG.error("Could not delete {}.", source, e);
+        }
+    }
+
+    /**
+     * Starts deleting. Can be called once.
+     *
+     * @return A future of how many keys each batch deleted, and of a DeletionException for every key that could not
+     * be deleted. Fails only if reading the summaries fails.
+     */
+    public CompletableFuture<FanInResult<Integer>> start() {
+        final Batches batches = new Batches(summaries.iterator());
+        final Stream<Supplier<CompletableFuture<FanInResult<Integer>>>> tasks = StreamSupport
+                .stream(spliteratorUnknownSize(batches, ORDERED | NONNULL), false)
+                .map(batch -> () -> completedFuture(delete(batch)));
+        return FanIn.bounded(tasks, batchesInFlight, executor).whenComplete((result, throwable) -> summaries.close())
+                    .thenApply(Deletion::flatten);
+    }
+
+    /**
+     * Batches catch their failures, so the only Throwables of the batches' own result are executor rejections.
+     */
+    private static FanInResult<Integer> flatten(final FanInResult<FanInResult<Integer>> batchResults) {
+        final FanInResult<Integer> rejected = FanInResult.failure(
+                batchResults.getThrowables().toArray(new Throwable[batchResults.getThrowables().size()]));
+        return batchResults.getSuccessful().stream().reduce(rejected, FanInResult::concat);
+    }
+
+    private FanInResult<Integer> delete(final Batch batch) {
+        final FanInResult.Builder<Integer> result = new FanInResult.Builder<>();
+        // In quiet mode, S3 only reports the keys it could not delete.
+        final DeleteObjectsRequest request = new DeleteObjectsRequest(batch.bucket).withKeys(batch.keys)
+                                                                                   .withQuiet(true);
+        try {
+            client.deleteObjects(request);
+            result.add(batch.keys.size());
+        } catch (final MultiObjectDeleteException e) {
+            result.add(batch.keys.size() - e.getErrors().size());
+            e.getErrors().forEach(error -> result.add(new DeletionException(error.getKey(), error.getCode(),
+                                                                            error.getMessage())));
+        } catch (final RuntimeException e) {
+            batch.keys.forEach(key -> result.add(new DeletionException(key.getKey(), e)));
+        }
+        return result.build();
+    }
+
+    private static final class Batch {
+
+        private final String bucket;
+        private final List<KeyVersion> keys = new ArrayList<>();
+
+        private Batch(final String bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Cuts batches of up to batchSize keys of one bucket each, reading the summaries only as far as the batch handed
+     * out.
+     */
+    private final class Batches implements Iterator<Batch> {
+
+        private final Iterator<S3ObjectSummary> summaries;
+        private S3ObjectSummary pending;
+
+        private Batches(final Iterator<S3ObjectSummary> summaries) {
+            this.summaries = summaries;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pending != null || summaries.hasNext();
+        }
+
+        @Override
+        public Batch next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            S3ObjectSummary summary = pending != null ? pending : summaries.next();
+            pending = null;
+            final Batch batch = new Batch(summary.getBucketName());
+            while (true) {
+                batch.keys.add(new KeyVersion(summary.getKey()));
+                if (batch.keys.size() == batchSize || !summaries.hasNext()) {
+                    return batch;
+                }
+                summary = summaries.next();
+                if (!batch.bucket.equals(summary.getBucketName())) {
+                    pending = summary;
+                    return batch;
+                }
+            }
         }
     }
 
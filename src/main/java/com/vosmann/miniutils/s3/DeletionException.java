@@ -0,0 +1,35 @@
+package com.vosmann.miniutils.s3;
+
+/**
+ * Failure to delete one key. Either S3 reported an error for the key, with a code such as AccessDenied, or the whole
+ * batch the key was in failed, in which case the cause is what the batch failed with.
+ */
+public class DeletionException extends RuntimeException {
+
+    private final String key;
+    private final String code;
+
+    DeletionException(final String key, final String code, final String message) {
+        super("Could not delete " + key + ": " + code + " " + message);
+        this.key = key;
+        this.code = code;
+    }
+
+    DeletionException(final String key, final Throwable cause) {
+        super("Could not delete " + key + ": " + cause, cause);
+        this.key = key;
+        this.code = null;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return The error code S3 reported for the key, or null if the whole batch failed.
+     */
+    public String getCode() {
+        return code;
+    }
+
+}
@@ -4,37 +4,83 @@ import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.vosmann.miniutils.futures.BlockingExecutors;
+import com.vosmann.miniutils.futures.Futures;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toList;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
 
 public class Lister {
 
     private static final Logger LOG = LoggerFactory.getLogger(Lister.class);
 
     private final AmazonS3Client client;
+    private final Executor executor;
 
     public Lister(AmazonS3Client client) {
+        this(client, BlockingExecutors.shared());
+    }
+
+    /**
+     * @param executor Fetches the next page of a streamed listing while the current one is consumed.
+     */
+    public Lister(final AmazonS3Client client, final Executor executor) {
+        checkNotNull(client, "S3 client is null.");
+        checkNotNull(executor, "Executor is null.");
         this.client = client;
+        this.executor = executor;
     }
 
+    /**
+     * Lists all objects at the address, following as many pages as there are, and stores them compactly as they
+     * arrive. For prefixes with very many keys, prefer stream, which does not hold them in memory at all.
+     */
     public Listing at(final Address address) {
-        try {
-            final ObjectListing listing = getObjectListing(address);
-            return new Listing(address, listing.getObjectSummaries());
+        try (final Stream<S3ObjectSummary> summaries = stream(address)) {
+            return new Listing(address, summaries.iterator());
         } catch (final RuntimeException e) {
             LOG.warn("Could not list objects at {}. Returning empty.", address);
             return new Listing(address, "Listing failed: " + e.getMessage());
         }
     }
 
-    private ObjectListing getObjectListing(final Address address) {
-        return client.listObjects(
-                new ListObjectsRequest().withBucketName(address.getBucket()).withPrefix(address.getKey()));
+    /**
+     * Lazily lists all objects at the address, one page at a time, so memory stays constant however many keys there
+     * are. The next page is requested in the background as soon as the current one arrives.
+     *
+     * @return The summaries in key order. A failed request ends the stream with a CompletionException. Close the
+     * stream when abandoning it early, to cancel the page in flight.
+     */
+    public Stream<S3ObjectSummary> stream(final Address address) {
+        checkNotNull(address, "Address is null.");
+        final ListObjectsRequest first = new ListObjectsRequest().withBucketName(address.getBucket())
+                                                                 .withPrefix(address.getKey());
+        return Futures.paginate(() -> list(first), this::next)
+                      .flatMap(page -> page.getObjectSummaries().stream());
+    }
+
+    private Optional<CompletableFuture<ObjectListing>> next(final ObjectListing page) {
+        if (!page.isTruncated()) {
+            return Optional.empty();
+        }
+        // Without a delimiter, S3 may leave out the next marker; the last key of the page is the marker then.
+        final List<S3ObjectSummary> summaries = page.getObjectSummaries();
+        final String marker = page.getNextMarker() != null || summaries.isEmpty()
+                ? page.getNextMarker() : summaries.get(summaries.size() - 1).getKey();
+        return Optional.of(list(new ListObjectsRequest(page.getBucketName(), page.getPrefix(), marker,
+                                                       page.getDelimiter(), page.getMaxKeys())));
+    }
+
+    private CompletableFuture<ObjectListing> list(final ListObjectsRequest request) {
+        return supplyAsync(() -> client.listObjects(request), executor);
     }
 
 }
@@ -2,56 +2,96 @@ package com.vosmann.miniutils.s3;
 
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.google.common.collect.ImmutableList;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.RandomAccess;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
-import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.joining;
 
+/**
+ * Summaries of the objects at an address, or why they could not be listed. Stored compactly, column by column, so
+ * listings of millions of keys fit on the heap; get decodes summaries on access.
+ */
 public class Listing {
 
-    private static final Logger LOG = LoggerFactory.getLogger(Listing.class);
-
     private final Address address;
-    private final List<S3ObjectSummary> summaries;
+    private final SummaryColumns columns;
+    private final boolean whole;
+    private final int from;
+    private final int to;
     private final Optional<String> errorMessage;
+    private volatile int[] rows; // Null until first accessed, and for a whole listing, whose rows are all in order.
 
     Listing(final Address address, final String message) {
         checkNotNull(address, "Null address.");
         checkArgument(!isNullOrEmpty(message), "Error message null/empty.");
         this.address = address;
-        this.summaries = ImmutableList.of();
+        this.columns = SummaryColumns.of(ImmutableList.<S3ObjectSummary>of().iterator());
+        this.whole = true;
+        this.from = 0;
+        this.to = 0;
         this.errorMessage = Optional.of(message);
     }
 
     Listing(final Address address, final List<S3ObjectSummary> summaries) {
+        this(address, checkNotNull(summaries, "Null summaries.").iterator());
+    }
+
+    /**
+     * Consumes the summaries one by one, so they don't all have to be in memory as S3ObjectSummary instances.
+     */
+    Listing(final Address address, final Iterator<S3ObjectSummary> summaries) {
+        this(address, SummaryColumns.of(checkNotNull(summaries, "Null summaries.")), true, 0, -1);
+    }
+
+    /**
+     * @param whole Whether the listing has all of the columns' summaries. Otherwise, it has those from from to to in
+     *              the columns' time order.
+     */
+    private Listing(final Address address, final SummaryColumns columns, final boolean whole, final int from,
+                    final int to) {
         checkNotNull(address, "Null address.");
-        checkNotNull(summaries, "Null summaries.");
         this.address = address;
-        this.summaries = summaries;
+        this.columns = columns;
+        this.whole = whole;
+        this.from = from;
+        this.to = whole ? columns.size() : to;
         this.errorMessage = Optional.empty();
     }
 
+    /**
+     * @return An unmodifiable view of the summaries, each decoded when accessed.
+     */
     public List<S3ObjectSummary> get() {
-        return summaries;
+        return new Summaries();
     }
 
     public Optional<String> getErrorMessage() {
         return errorMessage;
     }
 
+    /**
+     * @return The objects last modified after begin and before end, in the order of this listing, which is key order
+     * for listings from S3. Found by binary search in an index by time that is built on the first call; the result
+     * shares this listing's storage and only holds the positions of its summaries.
+     */
     public Listing between(final Instant begin, final Instant end) {
-        final List<S3ObjectSummary> filtered = summaries.stream()
-            .filter(summary -> isBetween(summary, begin, end))
-            .collect(toList());
-        return new Listing(address, filtered);
+        checkNotNull(begin, "Begin is null.");
+        checkNotNull(end, "End is null.");
+        final int[] byTime = columns.timeOrder();
+        // Last modified times are whole milliseconds, so rounding the exclusive bounds outwards loses nothing.
+        final int low = columns.firstAfter(byTime, from, to, toMillis(begin, false));
+        final long endMillis = toMillis(end, true);
+        final int high = endMillis == Long.MIN_VALUE ? low : columns.firstAfter(byTime, low, to, endMillis - 1);
+        return new Listing(address, columns, false, low, high);
     }
 
     public Listing after(final Instant begin) {
@@ -62,9 +102,36 @@ public class Listing {
         return between(Instant.MIN, end);
     }
 
-    private boolean isBetween(final S3ObjectSummary summary, final Instant begin, final Instant end) {
-        final Instant instant = summary.getLastModified().toInstant();
-        return begin.isBefore(instant) && end.isAfter(instant);
+    /**
+     * @return The instant in milliseconds, rounded down or up, saturated at the range of long, which Instant.MIN and
+     * Instant.MAX exceed.
+     */
+    private static long toMillis(final Instant instant, final boolean roundUp) {
+        try {
+            final long millis = Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1000L),
+                                              instant.getNano() / 1_000_000);
+            return roundUp && instant.getNano() % 1_000_000 != 0 ? Math.addExact(millis, 1) : millis;
+        } catch (final ArithmeticException e) {
+            return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    private int indexAt(final int position) {
+        return whole ? position : rows()[position];
+    }
+
+    /**
+     * @return The positions of this listing's summaries among the columns', sorted back from time order into the
+     * columns' order. Only sorted when first accessed, so narrowing a range several times doesn't sort each step.
+     */
+    private int[] rows() {
+        int[] current = rows;
+        if (current == null) {
+            current = Arrays.copyOfRange(columns.timeOrder(), from, to);
+            Arrays.sort(current);
+            rows = current; // Racing threads sort equal copies; either one will do.
+        }
+        return current;
     }
 
     @Override
@@ -73,7 +140,23 @@ public class Listing {
             return "Listing{address=" + address + ", errorMessage=" + errorMessage + '}';
         } else {
             return "Listing{" + "address=" + address + ", keys="
-                    + summaries.stream().map(s -> s.getKey()).collect(joining(",")) + '}';
+                    + get().stream().map(s -> s.getKey()).collect(joining(",")) + '}';
+        }
+    }
+
+    private final class Summaries extends AbstractList<S3ObjectSummary> implements RandomAccess {
+
+        @Override
+        public S3ObjectSummary get(final int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + size() + ".");
+            }
+            return columns.get(indexAt(index));
+        }
+
+        @Override
+        public int size() {
+            return to - from;
         }
     }
 
@@ -0,0 +1,81 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * What changed at an address between two listings: keys that were added, removed, or whose size, ETag or last
+ * modified time differ.
+ */
+public class ListingDiff {
+
+    private final List<S3ObjectSummary> added;
+    private final List<S3ObjectSummary> removed;
+    private final List<S3ObjectSummary> modified;
+
+    ListingDiff(final List<S3ObjectSummary> added, final List<S3ObjectSummary> removed,
+                final List<S3ObjectSummary> modified) {
+        this.added = ImmutableList.copyOf(added);
+        this.removed = ImmutableList.copyOf(removed);
+        this.modified = ImmutableList.copyOf(modified);
+    }
+
+    /**
+     * Receives the changes one by one, in key order, as the new listing is compared to the previous one. Lets a
+     * caller act on the changes of a large prefix, e.g. its first listing, without holding them all in memory.
+     */
+    public interface Listener {
+
+        default void onAdded(final S3ObjectSummary summary) {
+        }
+
+        /**
+         * @param summary The object as the previous listing had it.
+         */
+        default void onRemoved(final S3ObjectSummary summary) {
+        }
+
+        /**
+         * @param previous The object as the previous listing had it.
+         * @param current  The object as it is now.
+         */
+        default void onModified(final S3ObjectSummary previous, final S3ObjectSummary current) {
+        }
+    }
+
+    public List<S3ObjectSummary> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return The removed objects, as the previous listing had them.
+     */
+    public List<S3ObjectSummary> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return The modified objects, as they are now.
+     */
+    public List<S3ObjectSummary> getModified() {
+        return modified;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ListingDiff{added=" + keys(added) + ", removed=" + keys(removed) + ", modified=" + keys(modified) + '}';
+    }
+
+    private static String keys(final List<S3ObjectSummary> summaries) {
+        return summaries.stream().map(S3ObjectSummary::getKey).collect(joining(",", "[", "]"));
+    }
+
+}
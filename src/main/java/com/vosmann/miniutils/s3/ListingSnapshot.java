@@ -0,0 +1,250 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Read-only, memory-mapped snapshot of a listing: key, size, ETag and last modified time of every object, sorted by
+ * key in S3's order. Loading only maps the file, so even a snapshot of millions of keys is available right away, and
+ * its content lives in the page cache rather than on the heap. Entries are decoded on access.
+ * <p>
+ * The file holds a header, the entries one after the other, and a table of the entries' offsets, which makes both
+ * access by index and lookup by key, a binary search, work without parsing the file. A single snapshot file is
+ * limited to 2GB, a few tens of millions of keys; larger prefixes should be split into several snapshots.
+ */
+public class ListingSnapshot {
+
+    private static final int MAGIC = 0x4d55534e; // "MUSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final String bucket;
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int offsetsPosition;
+
+    private ListingSnapshot(final String bucket, final ByteBuffer buffer) {
+        this.bucket = bucket;
+        this.buffer = buffer;
+        checkState(buffer.getInt(0) == MAGIC, "Not a listing snapshot.");
+        checkState(buffer.getInt(4) == VERSION, "Unsupported listing snapshot version %s.", buffer.getInt(4));
+        this.size = buffer.getInt(8);
+        this.offsetsPosition = (int) buffer.getLong(12);
+    }
+
+    /**
+     * Maps a snapshot file written by write.
+     *
+     * @param bucket Bucket of the listed objects, which is not stored in the file.
+     */
+    public static ListingSnapshot load(final String bucket, final Path file) {
+        checkNotNull(bucket, "Bucket is null.");
+        checkNotNull(file, "File is null.");
+        try (final FileChannel channel = FileChannel.open(file, READ)) {
+            checkState(channel.size() <= Integer.MAX_VALUE, "Snapshot %s is larger than 2GB.", file);
+            final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ListingSnapshot(bucket, mapped);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not load snapshot " + file + ".", e);
+        }
+    }
+
+    /**
+     * @return An empty snapshot, e.g. of a prefix that was never listed.
+     */
+    public static ListingSnapshot empty(final String bucket) {
+        checkNotNull(bucket, "Bucket is null.");
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(0).putLong(HEADER_SIZE);
+        return new ListingSnapshot(bucket, header);
+    }
+
+    /**
+     * Writes summaries, which have to be sorted by key in S3's order, as listings are, to a snapshot file. The offset
+     * table goes to a temporary file next to it while the entries are written, and is appended to them at the end, so
+     * writing takes the same memory however many summaries there are.
+     */
+    public static void write(final Iterator<S3ObjectSummary> summaries, final Path file) {
+        checkNotNull(summaries, "Summaries are null.");
+        checkNotNull(file, "File is null.");
+        final Path offsetsFile = file.resolveSibling(file.getFileName() + ".offsets");
+        try (final FileChannel channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING);
+             final FileChannel offsetsChannel = FileChannel.open(offsetsFile, CREATE, READ, WRITE, TRUNCATE_EXISTING,
+                                                                 DELETE_ON_CLOSE)) {
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel.position(HEADER_SIZE)), 1 << 16));
+            final DataOutputStream offsets = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(offsetsChannel), 1 << 16));
+            int count = 0;
+            String previous = null;
+            while (summaries.hasNext()) {
+                final S3ObjectSummary summary = summaries.next();
+                checkArgument(previous == null || compareKeys(previous, summary.getKey()) < 0,
+                              "Summaries are not sorted by key: %s after %s.", summary.getKey(), previous);
+                previous = summary.getKey();
+                offsets.writeLong(HEADER_SIZE + out.size());
+                ++count;
+                writeEntry(out, summary);
+            }
+            final long offsetsPosition = HEADER_SIZE + (long) out.size();
+            out.flush();
+            offsets.flush();
+            for (long copied = 0; copied < offsetsChannel.size(); ) {
+                copied += offsetsChannel.transferTo(copied, offsetsChannel.size() - copied, channel);
+            }
+            checkState(channel.size() <= Integer.MAX_VALUE, "Snapshot %s is larger than 2GB.", file);
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putLong(offsetsPosition).flip();
+            channel.write(header, 0);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not write snapshot " + file + ".", e);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getKey(final int index) {
+        final int offset = offset(index);
+        return string(offset);
+    }
+
+    public long getSize(final int index) {
+        final int offset = offset(index);
+        return buffer.getLong(offset + 4 + buffer.getInt(offset));
+    }
+
+    public Date getLastModified(final int index) {
+        final int offset = offset(index);
+        final long millis = buffer.getLong(offset + 4 + buffer.getInt(offset) + 8);
+        return millis == NO_DATE ? null : new Date(millis);
+    }
+
+    public String getETag(final int index) {
+        final int offset = offset(index);
+        return string(offset + 4 + buffer.getInt(offset) + 16);
+    }
+
+    /**
+     * @return The entry as a summary, as a listing would have returned it.
+     */
+    public S3ObjectSummary get(final int index) {
+        final S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(bucket);
+        summary.setKey(getKey(index));
+        summary.setSize(getSize(index));
+        summary.setLastModified(getLastModified(index));
+        summary.setETag(getETag(index));
+        return summary;
+    }
+
+    /**
+     * @return The index of the key, or, like Arrays.binarySearch, (-(insertion point) - 1) if it is not there.
+     */
+    public int indexOf(final String key) {
+        checkNotNull(key, "Key is null.");
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = compareKeys(getKey(middle), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    public Stream<S3ObjectSummary> stream() {
+        return IntStream.range(0, size).mapToObj(this::get);
+    }
+
+    /**
+     * Compares keys the way S3 orders them, by their UTF-8 bytes, which is code point order. Unlike String's
+     * compareTo, this puts surrogate pairs after the characters from U+E000 to U+FFFF.
+     */
+    static int compareKeys(final String first, final String second) {
+        final int length = Math.min(first.length(), second.length());
+        for (int i = 0; i < length; ++i) {
+            final char a = first.charAt(i);
+            final char b = second.charAt(i);
+            if (a != b) {
+                return fixUp(a) - fixUp(b);
+            }
+        }
+        return first.length() - second.length();
+    }
+
+    private static int fixUp(final char c) {
+        if (c < Character.MIN_SURROGATE) {
+            return c;
+        }
+        return Character.isSurrogate(c) ? c + 0x2000 : c - 0x800;
+    }
+
+    private static void writeEntry(final DataOutputStream out, final S3ObjectSummary summary) throws IOException {
+        writeString(out, summary.getKey());
+        out.writeLong(summary.getSize());
+        out.writeLong(summary.getLastModified() == null ? NO_DATE : summary.getLastModified().getTime());
+        writeString(out, summary.getETag());
+    }
+
+    private static void writeString(final DataOutputStream out, final String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String string(final int offset) {
+        final int length = buffer.getInt(offset);
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        final ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4);
+        view.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private int offset(final int index) {
+        checkElementIndex(index, size);
+        return (int) buffer.getLong(offsetsPosition + 8 * index);
+    }
+
+}
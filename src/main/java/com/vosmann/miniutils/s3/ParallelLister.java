@@ -0,0 +1,298 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.vosmann.miniutils.futures.BlockingExecutors;
+import com.vosmann.miniutils.futures.FanIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Lists a large prefix with several workers at once, each listing its own shard of the key space, so listing time
+ * scales with the number of workers rather than with the number of keys.
+ * <p>
+ * Listing starts with a delimiter listing of the address, and every common prefix it finds, e.g. a "directory" below
+ * the address, becomes a shard of its own. Whenever a shard turns out to have more than one page of keys while a
+ * worker is idle, the rest of it is split at the midpoint between the last listed key and the end of the shard, and the
+ * idle worker takes the upper half. Flat key spaces without common prefixes are therefore split as they are listed,
+ * too. Where a shard is open-ended, its end is guessed from the kind of character, digit or letter, at each position.
+ * A bad guess or non-ASCII keys only make for an uneven split: every key is still listed exactly once.
+ */
+public class ParallelLister {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelLister.class);
+
+    private static final String DEFAULT_DELIMITER = "/";
+    private static final char MAX_SPLIT_CHAR = 0x80;
+    private static final char AFTER_COMMON_PREFIX = Character.MAX_VALUE;
+
+    private final AmazonS3Client client;
+    private final int workers;
+    private final Executor executor;
+
+    public ParallelLister(final AmazonS3Client client, final int workers) {
+        this(client, workers, BlockingExecutors.shared());
+    }
+
+    /**
+     * @param workers  Maximum number of shards listed at the same time.
+     * @param executor Runs the workers, which block on S3 requests.
+     */
+    public ParallelLister(final AmazonS3Client client, final int workers, final Executor executor) {
+        checkNotNull(client, "S3 client is null.");
+        checkArgument(workers > 0, "Worker count must be positive.");
+        checkNotNull(executor, "Executor is null.");
+        this.client = client;
+        this.workers = workers;
+        this.executor = executor;
+    }
+
+    /**
+     * Like Lister.at, but lists in parallel. The summaries are sorted by key.
+     */
+    public Listing at(final Address address) {
+        final Queue<S3ObjectSummary> summaries = new ConcurrentLinkedQueue<>();
+        try {
+            forEach(address, summaries::add).join();
+        } catch (final RuntimeException e) {
+            LOG.warn("Could not list objects at {}. Returning empty.", address);
+            return new Listing(address, "Listing failed: " + e.getMessage());
+        }
+        final List<S3ObjectSummary> sorted = new ArrayList<>(summaries);
+        sorted.sort(Comparator.comparing(S3ObjectSummary::getKey));
+        return new Listing(address, sorted);
+    }
+
+    /**
+     * Lists in parallel without collecting the summaries, so memory stays constant in the number of keys.
+     *
+     * @param consumer Gets every summary at the address once, concurrently from several workers and in no particular
+     *                 order.
+     * @return A future that completes when all shards are listed, or fails with the first failed request.
+     */
+    public CompletableFuture<Void> forEach(final Address address, final Consumer<? super S3ObjectSummary> consumer) {
+        checkNotNull(address, "Address is null.");
+        checkNotNull(consumer, "Consumer is null.");
+        return new Run(address, consumer).start();
+    }
+
+    /**
+     * @return A key between low and high, or null if there is none. A null high stands for the end of the prefix.
+     */
+    static String midpoint(final String prefix, final String low, final String high) {
+        final StringBuilder midpoint = new StringBuilder();
+        boolean bounded = high != null;
+        for (int i = 0; i < low.length() + 8; ++i) {
+            final int lowChar = i < low.length() ? low.charAt(i) : 0;
+            final int highChar = bounded ? (i < high.length() ? high.charAt(i) : 0)
+                                         : (i < prefix.length() ? prefix.charAt(i) : endOfClass(lowChar));
+            if (highChar - lowChar >= 2) {
+                return midpoint.append((char) ((lowChar + highChar) / 2)).toString();
+            }
+            midpoint.append((char) lowChar);
+            if (highChar - lowChar == 1) {
+                bounded = false; // Whatever follows this character is below high already.
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Guesses the end of an open range from the kind of character it starts with, as keys tend to use digits or
+     * letters in the same positions.
+     */
+    private static int endOfClass(final int c) {
+        if ('0' <= c && c <= '9') {
+            return '9' + 1;
+        } else if ('a' <= c && c <= 'z') {
+            return 'z' + 1;
+        } else if ('A' <= c && c <= 'Z') {
+            return 'Z' + 1;
+        }
+        return MAX_SPLIT_CHAR;
+    }
+
+    /**
+     * Keys after after, up to and including upTo, under prefix. Null bounds are open. A delimited shard is listed with
+     * the delimiter, and each common prefix it finds becomes a shard of its own, limited to the same range.
+     */
+    private static final class Shard {
+
+        private final String prefix;
+        private final String after;
+        private final boolean delimited;
+        private String upTo;
+
+        private Shard(final String prefix, final String after, final String upTo, final boolean delimited) {
+            this.prefix = prefix;
+            this.after = after;
+            this.upTo = upTo;
+            this.delimited = delimited;
+        }
+
+        private boolean contains(final String key) {
+            return upTo == null || key.compareTo(upTo) <= 0;
+        }
+
+        /**
+         * @param marker The marker of the page the common prefix was found on; its keys all come after it.
+         */
+        private Shard below(final String commonPrefix, final String marker) {
+            return new Shard(commonPrefix,
+                             marker != null && marker.startsWith(commonPrefix) ? marker : null,
+                             upTo != null && upTo.startsWith(commonPrefix) ? upTo : null,
+                             false);
+        }
+    }
+
+    /**
+     * State of one listing: the shards waiting for a worker, and how many workers are busy. Guarded by this.
+     */
+    private final class Run {
+
+        private final Address address;
+        private final Consumer<? super S3ObjectSummary> consumer;
+        private final Deque<Shard> pending = new ArrayDeque<>();
+        private int busy;
+        private volatile boolean failed;
+
+        private Run(final Address address, final Consumer<? super S3ObjectSummary> consumer) {
+            this.address = address;
+            this.consumer = consumer;
+        }
+
+        private CompletableFuture<Void> start() {
+            pending.add(new Shard(address.getKey(), null, null, true));
+            final CompletableFuture<Void> done = new CompletableFuture<>();
+            IntStream.range(0, workers)
+                     .mapToObj(i -> CompletableFuture.runAsync(this::work, executor))
+                     .collect(FanIn.FanInCollector.toFanIn())
+                     .whenComplete(result -> {
+                         if (result.hasThrowables()) {
+                             done.completeExceptionally(result.getThrowables().get(0));
+                         } else {
+                             done.complete(null);
+                         }
+                     });
+            return done;
+        }
+
+        private void work() {
+            try {
+                Shard shard;
+                while ((shard = take()) != null) {
+                    list(shard);
+                    release();
+                }
+            } catch (final RuntimeException e) {
+                fail();
+                throw e;
+            }
+        }
+
+        private void list(final Shard shard) {
+            String marker = shard.after;
+            while (!failed) {
+                final String delimiter = shard.delimited ? DEFAULT_DELIMITER : null;
+                final ObjectListing page = client.listObjects(
+                        new ListObjectsRequest(address.getBucket(), shard.prefix, marker, delimiter, null));
+                for (final S3ObjectSummary summary : page.getObjectSummaries()) {
+                    if (shard.contains(summary.getKey())) {
+                        consumer.accept(summary);
+                    }
+                }
+                for (final String commonPrefix : page.getCommonPrefixes()) {
+                    if (shard.contains(commonPrefix)) {
+                        add(shard.below(commonPrefix, marker));
+                    }
+                }
+                final String lastKey = lastKey(page);
+                if (!page.isTruncated() || !shard.contains(lastKey)) {
+                    return;
+                }
+                // Keys below a common prefix are the shard's own business, so continue after all of them.
+                marker = page.getCommonPrefixes().contains(lastKey) ? lastKey + AFTER_COMMON_PREFIX : lastKey;
+                splitIfIdle(shard, marker);
+            }
+        }
+
+        private synchronized void splitIfIdle(final Shard shard, final String lastKey) {
+            if (!pending.isEmpty() || busy == workers) {
+                return;
+            }
+            final String midpoint = midpoint(shard.prefix, lastKey, shard.upTo);
+            if (midpoint != null && midpoint.startsWith(shard.prefix)) {
+                pending.add(new Shard(shard.prefix, midpoint, shard.upTo, shard.delimited));
+                shard.upTo = midpoint;
+                notifyAll();
+            }
+        }
+
+        private synchronized void add(final Shard shard) {
+            pending.add(shard);
+            notifyAll();
+        }
+
+        /**
+         * @return The next shard, or null once no shard is pending and no busy worker can split one off anymore.
+         */
+        private synchronized Shard take() {
+            while (pending.isEmpty() && busy > 0 && !failed) {
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a shard.", e);
+                }
+            }
+            if (pending.isEmpty() || failed) {
+                notifyAll();
+                return null;
+            }
+            ++busy;
+            return pending.poll();
+        }
+
+        private synchronized void release() {
+            --busy;
+            notifyAll();
+        }
+
+        private synchronized void fail() {
+            failed = true;
+            notifyAll();
+        }
+    }
+
+    private static String lastKey(final ObjectListing page) {
+        if (page.getNextMarker() != null) {
+            return page.getNextMarker();
+        }
+        final List<S3ObjectSummary> summaries = page.getObjectSummaries();
+        final List<String> prefixes = page.getCommonPrefixes();
+        final String lastSummary = summaries.isEmpty() ? null : summaries.get(summaries.size() - 1).getKey();
+        final String lastPrefix = prefixes.isEmpty() ? null : prefixes.get(prefixes.size() - 1);
+        if (lastSummary == null || lastPrefix == null) {
+            return lastSummary != null ? lastSummary : lastPrefix;
+        }
+        return lastSummary.compareTo(lastPrefix) > 0 ? lastSummary : lastPrefix;
+    }
+
+}
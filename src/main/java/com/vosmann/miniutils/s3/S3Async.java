@@ -0,0 +1,81 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.vosmann.miniutils.futures.BlockingExecutors;
+import com.vosmann.miniutils.futures.FanInResult;
+
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+/**
+ * Runs the blocking S3 operations on an executor and exposes them as CompletableFutures, e.g. for FanIn. Unlike the
+ * Runnables, the futures fail when an operation fails, instead of only logging it; deletions, which go on past failed
+ * keys, report them in their result.
+ * <p>
+ * By default the operations run on BlockingExecutors.shared(), which on Java 21 and later gives every call a virtual
+ * thread, so tens of thousands of requests can be in flight without tuning a pool.
+ */
+public class S3Async {
+
+    private final AmazonS3Client client;
+    private final Executor executor;
+    private final Lister lister;
+
+    public S3Async(final AmazonS3Client client) {
+        this(client, BlockingExecutors.shared());
+    }
+
+    public S3Async(final AmazonS3Client client, final Executor executor) {
+        checkNotNull(client, "S3 client is null.");
+        checkNotNull(executor, "Executor is null.");
+        this.client = client;
+        this.executor = executor;
+        this.lister = new Lister(client);
+    }
+
+    public CompletableFuture<Void> upload(final Address address, final int size, final InputStream stream) {
+        final Upload upload = new Upload(address, size, stream, client);
+        return runAsync(upload::upload, executor);
+    }
+
+    /**
+     * @return A future of the String at the address, or of an empty Optional if the object is empty.
+     */
+    public CompletableFuture<Optional<String>> download(final Address address, final int maxSize) {
+        final StringDownload download = new StringDownload(address, maxSize, client);
+        return supplyAsync(download::download, executor);
+    }
+
+    /**
+     * @return A future of how many keys each batch deleted, and of a DeletionException for every key that could not
+     * be deleted.
+     */
+    public CompletableFuture<FanInResult<Integer>> delete(final Listing listing) {
+        return new Deletion.Builder().listing(listing).client(client).executor(executor).build().start();
+    }
+
+    /**
+     * Deletes all objects at the address while listing them, without holding all of their keys.
+     */
+    public CompletableFuture<FanInResult<Integer>> deleteAll(final Address address) {
+        checkNotNull(address, "Address is null.");
+        return new Deletion.Builder().summaries(lister.stream(address)).client(client).executor(executor).build()
+                                     .start();
+    }
+
+    /**
+     * @return A future of the Listing at the address. Like Lister.at, a failed listing is a Listing with an error
+     * message.
+     */
+    public CompletableFuture<Listing> list(final Address address) {
+        checkNotNull(address, "Address is null.");
+        return supplyAsync(() -> lister.at(address), executor);
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Keeps the last listing of each shard, i.e. of each address, as a memory-mapped ListingSnapshot in a local
+ * directory, so a restarted process has its listings back right away, without listing anything.
+ * <p>
+ * Refreshing re-lists one shard and tells what changed since its previous snapshot. S3 can't tell which prefixes
+ * changed without listing them, so keeping the shards small and refreshing only the ones known to have changed, e.g.
+ * from S3 event notifications, is what makes refreshes cheap. Different shards can be refreshed concurrently; the
+ * same shard should not be. Snapshots that were loaded earlier stay valid while their shard is refreshed.
+ */
+public class SnapshotStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotStore.class);
+    private static final String SUFFIX = ".snapshot";
+
+    private final Path directory;
+    private final Lister lister;
+
+    public SnapshotStore(final Path directory, final Lister lister) {
+        checkNotNull(directory, "Directory is null.");
+        checkNotNull(lister, "Lister is null.");
+        checkArgument(Files.isDirectory(directory), "%s is not a directory.", directory);
+        this.directory = directory;
+        this.lister = lister;
+    }
+
+    /**
+     * @return The shard's last snapshot, or an empty one if it was never refreshed.
+     */
+    public ListingSnapshot load(final Address shard) {
+        checkNotNull(shard, "Shard is null.");
+        final Path file = file(shard);
+        return Files.exists(file) ? ListingSnapshot.load(shard.getBucket(), file)
+                                  : ListingSnapshot.empty(shard.getBucket());
+    }
+
+    /**
+     * Re-lists the shard, replaces its snapshot, and returns what changed. The first refresh of a shard reports all of
+     * its objects as added; for large shards, prefer the refresh that takes a listener.
+     */
+    public ListingDiff refresh(final Address shard) {
+        final List<S3ObjectSummary> added = new ArrayList<>();
+        final List<S3ObjectSummary> removed = new ArrayList<>();
+        final List<S3ObjectSummary> modified = new ArrayList<>();
+        refresh(shard, new ListingDiff.Listener() {
+            @Override
+            public void onAdded(final S3ObjectSummary summary) {
+                added.add(summary);
+            }
+
+            @Override
+            public void onRemoved(final S3ObjectSummary summary) {
+                removed.add(summary);
+            }
+
+            @Override
+            public void onModified(final S3ObjectSummary previous, final S3ObjectSummary current) {
+                modified.add(current);
+            }
+        });
+        return new ListingDiff(added, removed, modified);
+    }
+
+    /**
+     * Re-lists the shard and replaces its snapshot, streaming both the listing and the changes, so memory stays
+     * constant however many keys the shard has. If listing fails, the previous snapshot is kept, and the listener may
+     * have been told about part of the changes.
+     *
+     * @param listener Called on the calling thread, in key order.
+     */
+    public void refresh(final Address shard, final ListingDiff.Listener listener) {
+        checkNotNull(shard, "Shard is null.");
+        checkNotNull(listener, "Listener is null.");
+        final ListingSnapshot previous = load(shard);
+        final Path file = file(shard);
+        Path temporary = null;
+        try (final Stream<S3ObjectSummary> summaries = lister.stream(shard)) {
+            temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            ListingSnapshot.write(new Comparison(previous, summaries.iterator(), listener), temporary);
+            Files.move(temporary, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not store snapshot of " + shard + ".", e);
+        } finally {
+            deleteIfExists(temporary);
+        }
+    }
+
+    private Path file(final Address shard) {
+        final String name = Hashing.sha1().hashString(shard.getBucket() + '/' + shard.getKey(), UTF_8).toString();
+        return directory.resolve(name + SUFFIX);
+    }
+
+    private static void deleteIfExists(final Path temporary) {
+        if (temporary == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temporary);
+        } catch (final IOException e) {
+            LOG.warn("Could not delete {}.", temporary, e);
+        }
+    }
+
+    /**
+     * Passes the current listing through to the new snapshot, merging it with the previous snapshot on the way, both
+     * being sorted by key, to tell the listener what changed.
+     */
+    private static final class Comparison implements Iterator<S3ObjectSummary> {
+
+        private final ListingSnapshot previous;
+        private final Iterator<S3ObjectSummary> current;
+        private final ListingDiff.Listener listener;
+        private int index;
+
+        private Comparison(final ListingSnapshot previous, final Iterator<S3ObjectSummary> current,
+                           final ListingDiff.Listener listener) {
+            this.previous = previous;
+            this.current = current;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (current.hasNext()) {
+                return true;
+            }
+            while (index < previous.size()) {
+                listener.onRemoved(previous.get(index++));
+            }
+            return false;
+        }
+
+        @Override
+        public S3ObjectSummary next() {
+            if (!current.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final S3ObjectSummary summary = current.next();
+            while (index < previous.size()
+                    && ListingSnapshot.compareKeys(previous.getKey(index), summary.getKey()) < 0) {
+                listener.onRemoved(previous.get(index++));
+            }
+            if (index < previous.size() && previous.getKey(index).equals(summary.getKey())) {
+                final S3ObjectSummary old = previous.get(index++);
+                if (isModified(old, summary)) {
+                    listener.onModified(old, summary);
+                }
+            } else {
+                listener.onAdded(summary);
+            }
+            return summary;
+        }
+
+        private static boolean isModified(final S3ObjectSummary previous, final S3ObjectSummary current) {
+            return previous.getSize() != current.getSize()
+                    || !Objects.equals(previous.getETag(), current.getETag())
+                    || !Objects.equals(previous.getLastModified(), current.getLastModified());
+        }
+    }
+
+}
@@ -37,27 +37,30 @@ public class StringDownload implements Runnable {
 
     @Override
     public void run() {
-        LOG.info("Downloading max {} bytes from {}.", maxSize, address);
         try {
-            final S3Object obj = client.getObject(address.getBucket(), address.getKey());
-            final long size = obj.getObjectMetadata().getContentLength();
-            warnSize(obj);
-            checkArgument(0 < size && size <= maxSize, "S3 content too large.");
-
-            final Data data = Data.from((int) size, obj.getObjectContent());
-            final String string = data.toString();
-
-            if (!isNullOrEmpty(string)) {
-                result = Optional.empty().of(string);
-            } else {
-                result = Optional.empty();
-            }
+            result = download();
         } catch (final RuntimeException e) {
             LOG.error("Could not download String from {}. Returning empty.", address, e);
             result = Optional.empty();
         }
     }
 
+    /**
+     * Like run, but returns the result and lets failures through, e.g. to fail a future.
+     */
+    Optional<String> download() {
+        LOG.info("Downloading max {} bytes from {}.", maxSize, address);
+        final S3Object obj = client.getObject(address.getBucket(), address.getKey());
+        final long size = obj.getObjectMetadata().getContentLength();
+        warnSize(obj);
+        checkArgument(0 < size && size <= maxSize, "S3 content too large.");
+
+        final Data data = Data.from((int) size, obj.getObjectContent());
+        final String string = data.toString();
+
+        return isNullOrEmpty(string) ? Optional.empty() : Optional.of(string);
+    }
+
     private void warnSize(final S3Object obj) {
         final long objSize = obj.getObjectMetadata().getContentLength();
         LOG.info("S3 object size at {}/{} is {}B.", obj.getBucketName(), obj.getKey(), objSize);
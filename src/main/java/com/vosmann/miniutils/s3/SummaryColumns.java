@@ -0,0 +1,410 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.model.Owner;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Object summaries stored column by column, at a fraction of the heap that S3ObjectSummary instances take: sizes and
+ * last modified times in long arrays, and keys and ETags in one byte array. Keys are front coded in blocks of 16,
+ * each key storing only the bytes that differ from the key before it, which removes most of a listing's keys, as
+ * they share long prefixes. ETags that are hex MD5 digests, with or without a multipart suffix, take 16 bytes.
+ * <p>
+ * Keeps bucket, key, size, ETag, last modified time, storage class and owner; storage classes and owners, of which a
+ * listing has few distinct ones, are stored once each. Immutable once built. An index of the summaries ordered by
+ * last modified time is built on first use.
+ */
+final class SummaryColumns {
+
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final int BLOCK_SHIFT = 4;
+    private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+    private static final byte NO_ETAG = 0;
+    private static final byte MD5_ETAG = 1;
+    private static final byte MULTIPART_ETAG = 2;
+    private static final byte OTHER_ETAG = 3;
+    private static final int MD5_HEX_LENGTH = 32;
+
+    private final String bucket;
+    private final int size;
+    private final byte[] entries;
+    private final int[] blockOffsets;
+    private final long[] sizes;
+    private final long[] lastModified;
+    private final byte[] storageClassIds;
+    private final String[] storageClasses;
+    private final int[] ownerIds;
+    private final Owner[] owners;
+    private volatile int[] timeOrder;
+
+    private SummaryColumns(final Builder builder) {
+        bucket = builder.bucket;
+        size = builder.size;
+        entries = Arrays.copyOf(builder.entries, builder.entriesLength);
+        blockOffsets = Arrays.copyOf(builder.blockOffsets, (size + BLOCK_MASK) >>> BLOCK_SHIFT);
+        sizes = Arrays.copyOf(builder.sizes, size);
+        lastModified = Arrays.copyOf(builder.lastModified, size);
+        storageClassIds = Arrays.copyOf(builder.storageClassIds, size);
+        storageClasses = builder.storageClasses.toArray(new String[builder.storageClasses.size()]);
+        ownerIds = Arrays.copyOf(builder.ownerIds, size);
+        owners = builder.owners.toArray(new Owner[builder.owners.size()]);
+    }
+
+    static SummaryColumns of(final Iterator<S3ObjectSummary> summaries) {
+        checkNotNull(summaries, "Summaries are null.");
+        final Builder builder = new Builder();
+        while (summaries.hasNext()) {
+            builder.add(summaries.next());
+        }
+        return new SummaryColumns(builder);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getLastModifiedMillis(final int index) {
+        checkElementIndex(index, size);
+        return lastModified[index];
+    }
+
+    String getKey(final int index) {
+        checkElementIndex(index, size);
+        return new Cursor(index).key;
+    }
+
+    S3ObjectSummary get(final int index) {
+        checkElementIndex(index, size);
+        final Cursor cursor = new Cursor(index);
+        final S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(bucket);
+        summary.setKey(cursor.key);
+        summary.setETag(cursor.readETag());
+        summary.setSize(sizes[index]);
+        summary.setLastModified(lastModified[index] == NO_DATE ? null : new Date(lastModified[index]));
+        summary.setStorageClass(storageClasses[storageClassIds[index]]);
+        final Owner owner = owners[ownerIds[index]];
+        summary.setOwner(owner == null ? null : new Owner(owner.getId(), owner.getDisplayName()));
+        return summary;
+    }
+
+    /**
+     * @return Indexes of the summaries ordered by last modified time, and by index among equal times. Summaries
+     * without a last modified time come first.
+     */
+    int[] timeOrder() {
+        int[] order = timeOrder;
+        if (order == null) {
+            order = sortByTime();
+            timeOrder = order; // Racing threads build equal indexes; either one will do.
+        }
+        return order;
+    }
+
+    /**
+     * @return The first position in the time order, between from and to, whose time is greater than the given one,
+     * or to if there is none.
+     */
+    int firstAfter(final int[] order, final int from, final int to, final long millis) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (lastModified[order[middle]] > millis) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private int[] sortByTime() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; ++i) {
+            order[i] = i;
+        }
+        // Bottom-up merge sort, which is stable and doesn't box the indexes.
+        int[] buffer = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int low = 0; low < size; low += 2 * width) {
+                final int middle = Math.min(low + width, size);
+                final int high = Math.min(low + 2 * width, size);
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; ++i) {
+                    if (left < middle && (right >= high || lastModified[order[left]] <= lastModified[order[right]])) {
+                        buffer[i] = order[left++];
+                    } else {
+                        buffer[i] = order[right++];
+                    }
+                }
+            }
+            final int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Decodes the keys of a block up to the requested entry, and is then positioned at that entry's ETag.
+     */
+    private final class Cursor {
+
+        private final String key;
+        private int position;
+
+        private Cursor(final int index) {
+            position = blockOffsets[index >>> BLOCK_SHIFT];
+            byte[] keyBytes = new byte[64];
+            int keyLength = 0;
+            for (int i = index & ~BLOCK_MASK; ; ++i) {
+                final int shared = readVarInt();
+                final int suffixLength = readVarInt();
+                keyLength = shared + suffixLength;
+                if (keyLength > keyBytes.length) {
+                    keyBytes = Arrays.copyOf(keyBytes, Math.max(keyLength, 2 * keyBytes.length));
+                }
+                System.arraycopy(entries, position, keyBytes, shared, suffixLength);
+                position += suffixLength;
+                if (i == index) {
+                    break;
+                }
+                skipETag();
+            }
+            key = new String(keyBytes, 0, keyLength, UTF_8);
+        }
+
+        private String readETag() {
+            final byte type = entries[position++];
+            switch (type) {
+                case NO_ETAG:
+                    return null;
+                case MD5_ETAG:
+                    return readHex();
+                case MULTIPART_ETAG:
+                    final String digest = readHex();
+                    return digest + '-' + readVarInt();
+                default:
+                    final int length = readVarInt();
+                    final String eTag = new String(entries, position, length, UTF_8);
+                    position += length;
+                    return eTag;
+            }
+        }
+
+        private void skipETag() {
+            final byte type = entries[position++];
+            if (type == MD5_ETAG) {
+                position += MD5_HEX_LENGTH / 2;
+            } else if (type == MULTIPART_ETAG) {
+                position += MD5_HEX_LENGTH / 2;
+                readVarInt();
+            } else if (type == OTHER_ETAG) {
+                final int length = readVarInt();
+                position += length;
+            }
+        }
+
+        private String readHex() {
+            final char[] hex = new char[MD5_HEX_LENGTH];
+            for (int i = 0; i < MD5_HEX_LENGTH; i += 2) {
+                final int b = entries[position++] & 0xff;
+                hex[i] = Character.forDigit(b >>> 4, 16);
+                hex[i + 1] = Character.forDigit(b & 0xf, 16);
+            }
+            return new String(hex);
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                final byte b = entries[position++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    private static final class Builder {
+
+        private String bucket;
+        private int size;
+        private byte[] entries = new byte[1024];
+        private int entriesLength;
+        private int[] blockOffsets = new int[16];
+        private long[] sizes = new long[256];
+        private long[] lastModified = new long[256];
+        private byte[] storageClassIds = new byte[256];
+        private final List<String> storageClasses = new ArrayList<>();
+        private int[] ownerIds = new int[256];
+        private final List<Owner> owners = new ArrayList<>(Collections.singletonList((Owner) null));
+        private final Map<Owner, Integer> ownerIdsByOwner = new HashMap<>();
+        private byte[] previousKey = new byte[0];
+
+        private void add(final S3ObjectSummary summary) {
+            checkNotNull(summary, "Summary is null.");
+            checkNotNull(summary.getKey(), "Key is null.");
+            if (size == 0) {
+                bucket = summary.getBucketName();
+            }
+            checkArgument(Objects.equals(bucket, summary.getBucketName()),
+                          "Summaries of buckets %s and %s in one listing.", bucket, summary.getBucketName());
+            if (size == sizes.length) {
+                sizes = Arrays.copyOf(sizes, 2 * size);
+                lastModified = Arrays.copyOf(lastModified, 2 * size);
+                storageClassIds = Arrays.copyOf(storageClassIds, 2 * size);
+                ownerIds = Arrays.copyOf(ownerIds, 2 * size);
+            }
+            sizes[size] = summary.getSize();
+            lastModified[size] = summary.getLastModified() == null ? NO_DATE : summary.getLastModified().getTime();
+            storageClassIds[size] = storageClassId(summary.getStorageClass());
+            ownerIds[size] = ownerId(summary.getOwner());
+            addKey(summary.getKey().getBytes(UTF_8));
+            addETag(summary.getETag());
+            ++size;
+        }
+
+        private void addKey(final byte[] key) {
+            int shared = 0;
+            if ((size & BLOCK_MASK) == 0) {
+                final int block = size >>> BLOCK_SHIFT;
+                if (block == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, 2 * block);
+                }
+                blockOffsets[block] = entriesLength;
+            } else {
+                final int limit = Math.min(key.length, previousKey.length);
+                while (shared < limit && key[shared] == previousKey[shared]) {
+                    ++shared;
+                }
+            }
+            writeVarInt(shared);
+            writeVarInt(key.length - shared);
+            write(key, shared, key.length - shared);
+            previousKey = key;
+        }
+
+        private void addETag(final String eTag) {
+            if (eTag == null) {
+                writeByte(NO_ETAG);
+                return;
+            }
+            final int dash = eTag.indexOf('-');
+            final int digestLength = dash < 0 ? eTag.length() : dash;
+            final String parts = dash < 0 ? null : eTag.substring(dash + 1);
+            if (digestLength == MD5_HEX_LENGTH && isLowerHex(eTag, digestLength)
+                    && (parts == null || isCanonicalInt(parts))) {
+                writeByte(parts == null ? MD5_ETAG : MULTIPART_ETAG);
+                for (int i = 0; i < MD5_HEX_LENGTH; i += 2) {
+                    final int high = Character.digit(eTag.charAt(i), 16);
+                    writeByte((byte) (high << 4 | Character.digit(eTag.charAt(i + 1), 16)));
+                }
+                if (parts != null) {
+                    writeVarInt(Integer.parseInt(parts));
+                }
+            } else {
+                final byte[] bytes = eTag.getBytes(UTF_8);
+                writeByte(OTHER_ETAG);
+                writeVarInt(bytes.length);
+                write(bytes, 0, bytes.length);
+            }
+        }
+
+        private byte storageClassId(final String storageClass) {
+            int id = storageClasses.indexOf(storageClass);
+            if (id < 0) {
+                id = storageClasses.size();
+                checkArgument(id <= Byte.MAX_VALUE, "Too many storage classes.");
+                storageClasses.add(storageClass);
+            }
+            return (byte) id;
+        }
+
+        /**
+         * @return The owner's position in owners, where 0 stands for no owner. Owners are copied, as they're mutable.
+         */
+        private int ownerId(final Owner owner) {
+            if (owner == null) {
+                return 0;
+            }
+            final Integer id = ownerIdsByOwner.get(owner);
+            if (id != null) {
+                return id;
+            }
+            final Owner copy = new Owner(owner.getId(), owner.getDisplayName());
+            owners.add(copy);
+            ownerIdsByOwner.put(copy, owners.size() - 1);
+            return owners.size() - 1;
+        }
+
+        private static boolean isLowerHex(final String string, final int length) {
+            for (int i = 0; i < length; ++i) {
+                final char c = string.charAt(i);
+                if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isCanonicalInt(final String string) {
+            if (string.isEmpty() || string.length() > 9 || (string.charAt(0) == '0' && string.length() > 1)) {
+                return false;
+            }
+            for (int i = 0; i < string.length(); ++i) {
+                if (string.charAt(i) < '0' || string.charAt(i) > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void writeVarInt(final int value) {
+            int remaining = value;
+            while ((remaining & ~0x7f) != 0) {
+                writeByte((byte) (remaining & 0x7f | 0x80));
+                remaining >>>= 7;
+            }
+            writeByte((byte) remaining);
+        }
+
+        private void writeByte(final byte b) {
+            ensureCapacity(1);
+            entries[entriesLength++] = b;
+        }
+
+        private void write(final byte[] bytes, final int offset, final int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, entries, entriesLength, length);
+            entriesLength += length;
+        }
+
+        private void ensureCapacity(final int extra) {
+            if (entriesLength + extra > entries.length) {
+                final long capacity = Math.max(2L * entries.length, (long) entriesLength + extra);
+                checkArgument(capacity <= Integer.MAX_VALUE - 8, "Keys and ETags don't fit in 2GB.");
+                entries = Arrays.copyOf(entries, (int) capacity);
+            }
+        }
+    }
+
+}
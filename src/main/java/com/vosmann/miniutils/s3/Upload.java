@@ -34,12 +34,21 @@ public class Upload implements Runnable {
 
     @Override
     public void run() {
+        try {
+            upload();
+        } catch (final RuntimeException e) {
+            LOG.error("Failed uploading to {}.", address, e);
+        }
+    }
+
+    /**
+     * Like run, but lets failures through, e.g. to fail a future.
+     */
+    void upload() {
         LOG.info("Uploading {} bytes from input stream to {}.", metadata.getContentLength(), address);
         try {
             client.putObject(address.getBucket(), address.getKey(), stream, metadata);
             LOG.info("Finished uploading to {}.", address);
-        } catch (final RuntimeException e) {
-            LOG.error("Failed uploading to {}.", address, e);
         } finally {
             close(stream);
         }
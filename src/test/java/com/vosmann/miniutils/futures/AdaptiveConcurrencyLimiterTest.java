@@ -0,0 +1,113 @@
+package com.vosmann.miniutils.futures;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.vosmann.miniutils.futures.Futures.exceptionallyCompletedFuture;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    public void testQueuesOverTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter.Builder().initialLimit(2).build();
+        List<CompletableFuture<Integer>> started = new ArrayList<>();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            results.add(limiter.submit(() -> {
+                CompletableFuture<Integer> future = new CompletableFuture<>();
+                started.add(future);
+                return future;
+            }));
+        }
+
+        assertThat(started, hasSize(2));
+        assertThat(limiter.getWaiting(), is(1));
+
+        started.get(0).complete(0);
+
+        assertThat(results.get(0).join(), is(0));
+        assertThat(started, hasSize(3));
+        assertThat(limiter.getInFlight(), is(2));
+    }
+
+    @Test
+    public void testGrowsOnSuccess() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter.Builder().initialLimit(2).build();
+
+        IntStream.range(0, 100).forEach(i -> limiter.submit(() -> completedFuture(i)).join());
+
+        assertThat(limiter.getLimit(), greaterThan(2));
+    }
+
+    @Test
+    public void testShrinksOnThrottling() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter.Builder()
+                .initialLimit(100)
+                .backoffRatio(0.5)
+                .throttling(throwable -> throwable instanceof IllegalStateException)
+                .build();
+
+        limiter.submit(() -> exceptionallyCompletedFuture(new IllegalArgumentException()));
+        assertThat(limiter.getLimit(), is(100));
+        limiter.submit(() -> exceptionallyCompletedFuture(new IllegalStateException()));
+        assertThat(limiter.getLimit(), is(50));
+    }
+
+    @Test
+    public void testBacksOffOncePerBurstOfSignals() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter.Builder()
+                .initialLimit(100)
+                .backoffRatio(0.5)
+                .throttling(throwable -> true)
+                .build();
+        List<CompletableFuture<Integer>> started = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            limiter.submit(() -> {
+                CompletableFuture<Integer> future = new CompletableFuture<>();
+                started.add(future);
+                return future;
+            });
+        }
+
+        started.forEach(future -> future.completeExceptionally(new IllegalStateException()));
+
+        assertThat(limiter.getLimit(), is(50));
+    }
+
+    @Test
+    public void testPassesFailuresOn() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter.Builder().build();
+        try {
+            limiter.submit(() -> exceptionallyCompletedFuture(new IllegalStateException())).join();
+            fail();
+        } catch (CompletionException e) {
+            assertThat(e.getCause() instanceof IllegalStateException, is(true));
+        }
+    }
+
+    @Test
+    public void testWrapsFanInTasks() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter.Builder().initialLimit(3).build();
+        Stream<Supplier<CompletableFuture<Integer>>> tasks = IntStream.range(0, 10_000)
+                                                                      .mapToObj(i -> () -> completedFuture(i));
+
+        FanInResult<Integer> result = FanIn.bounded(tasks.map(limiter::wrap), 50).join();
+
+        assertThat(result.getSuccessful(), hasSize(10_000));
+        assertThat(limiter.getInFlight(), is(0));
+    }
+
+}
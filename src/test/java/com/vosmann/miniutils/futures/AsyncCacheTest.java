@@ -0,0 +1,154 @@
+package com.vosmann.miniutils.futures;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static com.vosmann.miniutils.futures.Futures.exceptionallyCompletedFuture;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class AsyncCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+
+    private final Function<String, CompletableFuture<String>> counting =
+            key -> completedFuture(key + loads.incrementAndGet());
+
+    @Test
+    public void testConcurrentLookupsShareOneLoad() {
+        CompletableFuture<String> load = new CompletableFuture<>();
+        AsyncCache<String, String> cache = new AsyncCache.Builder<String, String>().loader(key -> {
+            loads.incrementAndGet();
+            return load;
+        }).build();
+
+        CompletableFuture<String> first = cache.get("key");
+        CompletableFuture<String> second = cache.get("key");
+        load.complete("value");
+
+        assertThat(first.join(), is("value"));
+        assertThat(second.join(), is("value"));
+        assertThat(cache.get("key").join(), is("value"));
+        assertThat(loads.get(), is(1));
+    }
+
+    @Test
+    public void testCancellingOneLookupKeepsTheLoad() {
+        CompletableFuture<String> load = new CompletableFuture<>();
+        AsyncCache<String, String> cache = new AsyncCache.Builder<String, String>().loader(key -> {
+            loads.incrementAndGet();
+            return load;
+        }).build();
+
+        CompletableFuture<String> first = cache.get("key");
+        CompletableFuture<String> second = cache.get("key");
+        first.cancel(false);
+        load.complete("value");
+
+        assertThat(first.isCancelled(), is(true));
+        assertThat(load.isCancelled(), is(false));
+        assertThat(second.join(), is("value"));
+        assertThat(cache.get("key").join(), is("value"));
+        assertThat(loads.get(), is(1));
+    }
+
+    @Test
+    public void testFailedLoadsAreNotCached() {
+        AsyncCache<String, String> cache = new AsyncCache.Builder<String, String>().loader(key -> {
+            return loads.incrementAndGet() == 1 ? exceptionallyCompletedFuture(new IllegalStateException("down"))
+                                                : completedFuture("value");
+        }).build();
+
+        assertThat(cache.get("key").isCompletedExceptionally(), is(true));
+        assertThat(cache.get("key").join(), is("value"));
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    public void testNegativeTtl() {
+        AsyncCache<String, String> cache = new AsyncCache.Builder<String, String>().loader(key -> {
+            loads.incrementAndGet();
+            return exceptionallyCompletedFuture(new IllegalStateException("down"));
+        }).negativeTtl(1, TimeUnit.SECONDS).ticker(ticker).build();
+
+        cache.get("key");
+        cache.get("key");
+        assertThat(loads.get(), is(1));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        cache.get("key");
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    public void testExpireAfterWrite() {
+        AsyncCache<String, String> cache = new AsyncCache.Builder<String, String>()
+                .loader(counting)
+                .expireAfterWrite(1, TimeUnit.MINUTES)
+                .ticker(ticker)
+                .build();
+
+        assertThat(cache.get("key").join(), is("key1"));
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertThat(cache.get("key").join(), is("key1"));
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(cache.get("key").join(), is("key2"));
+    }
+
+    @Test
+    public void testRefreshAheadServesOldValueAndReloads() {
+        AsyncCache<String, String> cache = new AsyncCache.Builder<String, String>()
+                .loader(counting)
+                .refreshAfterWrite(1, TimeUnit.MINUTES)
+                .ticker(ticker)
+                .build();
+
+        assertThat(cache.get("key").join(), is("key1"));
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+        assertThat(cache.get("key").join(), is("key1"));
+        assertThat(cache.get("key").join(), is("key2"));
+    }
+
+    @Test
+    public void testMaximumSize() {
+        AsyncCache<String, String> cache = new AsyncCache.Builder<String, String>()
+                .loader(counting)
+                .maximumSize(2)
+                .build();
+
+        cache.get("a");
+        cache.get("b");
+        cache.get("c");
+
+        assertThat(cache.size() <= 2, is(true));
+    }
+
+    @Test
+    public void testMaximumWeight() {
+        AsyncCache<String, String> cache = new AsyncCache.Builder<String, String>()
+                .loader(key -> completedFuture(key))
+                .maximumWeight(10, (key, value) -> value.length())
+                .build();
+
+        cache.get("abcdef");
+        cache.get("ghijkl");
+
+        assertThat(cache.size(), is(1L));
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.vosmann.miniutils.futures;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class AsyncRateLimiterTest {
+
+    @Test
+    public void testBurstIsAvailableRightAway() {
+        AsyncRateLimiter limiter = AsyncRateLimiter.create(1, TimeUnit.HOURS, 3);
+
+        List<CompletableFuture<Void>> permits = IntStream.range(0, 4).mapToObj(i -> limiter.acquire())
+                                                         .collect(toList());
+
+        assertThat(permits.get(0).isDone(), is(true));
+        assertThat(permits.get(1).isDone(), is(true));
+        assertThat(permits.get(2).isDone(), is(true));
+        assertThat(permits.get(3).isDone(), is(false));
+    }
+
+    @Test
+    public void testPermitsAreSpacedOut() {
+        AsyncRateLimiter limiter = AsyncRateLimiter.create(100, TimeUnit.SECONDS, 1);
+        long start = System.nanoTime();
+
+        CompletableFuture.allOf(IntStream.range(0, 11).mapToObj(i -> limiter.acquire())
+                                         .toArray(CompletableFuture[]::new)).join();
+
+        assertThat(System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(95)));
+    }
+
+    @Test
+    public void testWrapsFanInTasks() {
+        AsyncRateLimiter limiter = AsyncRateLimiter.create(1000, TimeUnit.SECONDS, 10);
+        Stream<Supplier<CompletableFuture<Integer>>> tasks = IntStream.range(0, 50)
+                                                                      .mapToObj(i -> () -> completedFuture(i));
+
+        FanInResult<Integer> result = FanIn.bounded(tasks.map(limiter::wrap), 5).join();
+
+        assertThat(result.getSuccessful(), hasSize(50));
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.vosmann.miniutils.futures;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.vosmann.miniutils.futures.Futures.exceptionallyCompletedFuture;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class BatcherTest {
+
+    private final List<List<Integer>> batches = new ArrayList<>();
+
+    private final Function<List<Integer>, CompletableFuture<Map<Integer, String>>> doubling = keys -> {
+        batches.add(keys);
+        return completedFuture(keys.stream().collect(toMap(key -> key, key -> "v" + key * 2)));
+    };
+
+    @Test
+    public void testFlushesWhenFull() {
+        Batcher<Integer, String> batcher = new Batcher.Builder<Integer, String>().batchFunction(doubling)
+                                                                                 .maxBatchSize(2)
+                                                                                 .maxDelay(1, TimeUnit.HOURS)
+                                                                                 .build();
+
+        CompletableFuture<String> one = batcher.load(1);
+        assertThat(one.isDone(), is(false));
+        CompletableFuture<String> two = batcher.load(2);
+
+        assertThat(one.join(), is("v2"));
+        assertThat(two.join(), is("v4"));
+        assertThat(batches, is(asList(asList(1, 2))));
+    }
+
+    @Test
+    public void testFlushesAfterMaxDelay() {
+        Batcher<Integer, String> batcher = new Batcher.Builder<Integer, String>().batchFunction(doubling)
+                                                                                 .maxBatchSize(100)
+                                                                                 .maxDelay(5, TimeUnit.MILLISECONDS)
+                                                                                 .build();
+
+        assertThat(batcher.load(3).join(), is("v6"));
+        assertThat(batches, hasSize(1));
+    }
+
+    @Test
+    public void testDeduplicatesKeysWithinBatch() {
+        Batcher<Integer, String> batcher = new Batcher.Builder<Integer, String>().batchFunction(doubling)
+                                                                                 .maxDelay(1, TimeUnit.HOURS)
+                                                                                 .build();
+
+        CompletableFuture<String> first = batcher.load(1);
+        CompletableFuture<String> second = batcher.load(1);
+        batcher.flush();
+
+        assertThat(first.join(), is("v2"));
+        assertThat(second.join(), is("v2"));
+        assertThat(batches, is(asList(asList(1))));
+    }
+
+    @Test
+    public void testCancellingOneCallerKeepsTheOthersLoad() {
+        Batcher<Integer, String> batcher = new Batcher.Builder<Integer, String>().batchFunction(doubling)
+                                                                                 .maxDelay(1, TimeUnit.HOURS)
+                                                                                 .build();
+
+        CompletableFuture<String> first = batcher.load(1);
+        CompletableFuture<String> second = batcher.load(1);
+        first.cancel(false);
+        batcher.flush();
+
+        assertThat(first.isCancelled(), is(true));
+        assertThat(second.join(), is("v2"));
+        assertThat(batches, is(asList(asList(1))));
+    }
+
+    @Test
+    public void testMissingKeyFailsOnlyItsOwnFuture() {
+        Batcher<Integer, String> batcher = new Batcher.Builder<Integer, String>()
+                .batchFunction(keys -> completedFuture(keys.stream()
+                                                           .filter(key -> key != 2)
+                                                           .collect(toMap(key -> key, key -> "ok"))))
+                .maxDelay(1, TimeUnit.HOURS)
+                .build();
+
+        CompletableFuture<String> one = batcher.load(1);
+        CompletableFuture<String> two = batcher.load(2);
+        batcher.flush();
+
+        assertThat(one.join(), is("ok"));
+        assertFailedWith(two, NoSuchElementException.class);
+    }
+
+    @Test
+    public void testFailedBatchFailsEveryKey() {
+        Batcher<Integer, String> batcher = new Batcher.Builder<Integer, String>()
+                .batchFunction(keys -> exceptionallyCompletedFuture(new IllegalStateException("down")))
+                .maxDelay(1, TimeUnit.HOURS)
+                .build();
+
+        CompletableFuture<String> one = batcher.load(1);
+        CompletableFuture<String> two = batcher.load(2);
+        batcher.flush();
+
+        assertFailedWith(one, IllegalStateException.class);
+        assertFailedWith(two, IllegalStateException.class);
+    }
+
+    private void assertFailedWith(CompletableFuture<String> future, Class<?> exceptionClass) {
+        try {
+            future.join();
+            fail("Future should have failed.");
+        } catch (CompletionException e) {
+            assertThat(e.getCause(), instanceOf(exceptionClass));
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.vosmann.miniutils.futures;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+
+public class BlockingExecutorsTest {
+
+    @Test
+    public void testRunsBlockingTasksConcurrently() {
+        ExecutorService executor = BlockingExecutors.create(8);
+        CountDownLatch allStarted = new CountDownLatch(8);
+        try {
+            CompletableFuture<?>[] tasks = new CompletableFuture<?>[8];
+            for (int i = 0; i < tasks.length; ++i) {
+                tasks[i] = CompletableFuture.runAsync(() -> {
+                    allStarted.countDown();
+                    awaitUninterruptibly(allStarted, 5, TimeUnit.SECONDS);
+                }, executor);
+            }
+            CompletableFuture.allOf(tasks).join();
+            assertThat(allStarted.getCount(), is(0L));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFallsBackToNamedPool() {
+        String thread = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(),
+                                                      BlockingExecutors.shared()).join();
+
+        if (!BlockingExecutors.hasVirtualThreads()) {
+            assertThat(thread, startsWith("miniutils-blocking-"));
+        }
+    }
+
+    @Test
+    public void testSharedExecutorCannotBeShutDown() {
+        assertThat(BlockingExecutors.shared(), is(not(instanceOf(ExecutorService.class))));
+    }
+
+}
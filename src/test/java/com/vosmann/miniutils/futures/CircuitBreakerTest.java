@@ -0,0 +1,151 @@
+package com.vosmann.miniutils.futures;
+
+import com.google.common.base.Ticker;
+import com.vosmann.miniutils.futures.CircuitBreaker.State;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.vosmann.miniutils.futures.Futures.exceptionallyCompletedFuture;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+    private final AtomicInteger calls = new AtomicInteger();
+    private final Supplier<CompletableFuture<String>> failing = () -> {
+        calls.incrementAndGet();
+        return exceptionallyCompletedFuture(new IllegalStateException());
+    };
+    private final Supplier<CompletableFuture<String>> succeeding = () -> {
+        calls.incrementAndGet();
+        return completedFuture("ok");
+    };
+
+    private final CircuitBreaker breaker = new CircuitBreaker.Builder().name("s3")
+                                                                       .window(10, 4)
+                                                                       .openDuration(1, TimeUnit.SECONDS)
+                                                                       .probes(2)
+                                                                       .ticker(ticker)
+                                                                       .build();
+
+    @Test
+    public void testOpensOnFailureRate() {
+        breaker.call(succeeding);
+        breaker.call(succeeding);
+        breaker.call(failing);
+        assertThat(breaker.getState(), is(State.CLOSED));
+
+        breaker.call(failing);
+
+        assertThat(breaker.getState(), is(State.OPEN));
+    }
+
+    @Test
+    public void testFailsFastWhileOpen() {
+        open();
+        int callsBefore = calls.get();
+
+        CompletableFuture<String> result = breaker.call(succeeding);
+
+        assertThat(calls.get(), is(callsBefore));
+        try {
+            result.join();
+            fail();
+        } catch (CompletionException e) {
+            assertThat(e.getCause(), instanceOf(CircuitOpenException.class));
+        }
+    }
+
+    @Test
+    public void testClosesAfterSuccessfulProbes() {
+        open();
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(breaker.getState(), is(State.HALF_OPEN));
+        breaker.call(succeeding);
+        assertThat(breaker.getState(), is(State.HALF_OPEN));
+        breaker.call(succeeding);
+
+        assertThat(breaker.getState(), is(State.CLOSED));
+        breaker.call(failing); // The window starts empty again.
+        assertThat(breaker.getState(), is(State.CLOSED));
+    }
+
+    @Test
+    public void testReopensOnFailedProbe() {
+        open();
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        breaker.call(failing);
+
+        assertThat(breaker.getState(), is(State.OPEN));
+    }
+
+    @Test
+    public void testLimitsProbes() {
+        open();
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        CompletableFuture<String> probe = new CompletableFuture<>();
+
+        breaker.call(() -> probe);
+        breaker.call(() -> probe);
+        CompletableFuture<String> rejected = breaker.call(succeeding);
+
+        assertThat(rejected.isCompletedExceptionally(), is(true));
+        probe.complete("ok");
+        assertThat(breaker.getState(), is(State.CLOSED));
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        CircuitBreaker slowBreaker = new CircuitBreaker.Builder().window(4, 4)
+                                                                 .slowCalls(0.5, 100, TimeUnit.MILLISECONDS)
+                                                                 .ticker(ticker)
+                                                                 .build();
+        for (int i = 0; i < 4; ++i) {
+            CompletableFuture<String> slow = new CompletableFuture<>();
+            slowBreaker.call(() -> slow);
+            nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(i < 2 ? 100 : 1));
+            slow.complete("late");
+        }
+
+        assertThat(slowBreaker.getState(), is(State.OPEN));
+    }
+
+    @Test
+    public void testIgnoresFailuresThatDontCount() {
+        CircuitBreaker lenient = new CircuitBreaker.Builder().window(4, 4)
+                                                             .failures(t -> !(t instanceof IllegalStateException))
+                                                             .build();
+
+        for (int i = 0; i < 10; ++i) {
+            lenient.call(failing);
+        }
+
+        assertThat(lenient.getState(), is(State.CLOSED));
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; ++i) {
+            breaker.call(failing);
+        }
+        assertThat(breaker.getState(), is(State.OPEN));
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.vosmann.miniutils.futures;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+
+public class DeadlineTest {
+
+    @Test
+    public void testRemaining() {
+        Deadline deadline = Deadline.after(1, TimeUnit.HOURS);
+
+        assertThat(deadline.remaining(TimeUnit.MINUTES), is(59L));
+        assertThat(deadline.hasRemaining(59, TimeUnit.MINUTES), is(true));
+        assertThat(deadline.hasRemaining(2, TimeUnit.HOURS), is(false));
+        assertThat(deadline.isExpired(), is(false));
+    }
+
+    @Test
+    public void testFailsTrackedFuturesOnExpiry() {
+        Deadline deadline = Deadline.after(20, TimeUnit.MILLISECONDS);
+        CompletableFuture<String> future = deadline.track(new CompletableFuture<>());
+
+        assertFailsWithDeadline(future);
+        assertThat(deadline.isExpired(), is(true));
+    }
+
+    @Test
+    public void testCancelFailsTrackedFutures() {
+        Deadline deadline = Deadline.after(1, TimeUnit.HOURS);
+        CompletableFuture<String> future = deadline.track(new CompletableFuture<>());
+
+        deadline.cancel();
+
+        assertThat(future.isCompletedExceptionally(), is(true));
+        assertThat(deadline.remaining(TimeUnit.NANOSECONDS), is(0L));
+    }
+
+    @Test
+    public void testDoesNotStartTasksAfterExpiry() {
+        Deadline deadline = Deadline.after(1, TimeUnit.HOURS);
+        deadline.cancel();
+        AtomicInteger started = new AtomicInteger();
+
+        CompletableFuture<Integer> result = deadline.call(() -> completedFuture(started.incrementAndGet()));
+
+        assertFailsWithDeadline(result);
+        assertThat(started.get(), is(0));
+    }
+
+    @Test
+    public void testChildExpiresWithParent() {
+        Deadline parent = Deadline.after(1, TimeUnit.HOURS);
+        Deadline child = parent.child(2, TimeUnit.HOURS);
+        CompletableFuture<String> future = child.track(new CompletableFuture<>());
+
+        assertThat(child.remaining(TimeUnit.MINUTES), lessThanOrEqualTo(60L));
+        parent.cancel();
+
+        assertThat(child.isExpired(), is(true));
+        assertThat(future.isCompletedExceptionally(), is(true));
+    }
+
+    @Test
+    public void testChildExpiresBeforeParent() {
+        Deadline parent = Deadline.after(1, TimeUnit.HOURS);
+        Deadline child = parent.child(20, TimeUnit.MILLISECONDS);
+
+        assertFailsWithDeadline(child.track(new CompletableFuture<>()));
+        assertThat(parent.isExpired(), is(false));
+    }
+
+    @Test
+    public void testStopsComposedChain() {
+        Deadline deadline = Deadline.after(1, TimeUnit.HOURS);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        AtomicInteger secondStarted = new AtomicInteger();
+
+        CompletableFuture<Integer> chain = deadline.call(() -> first)
+                                                   .thenCompose(deadline.compose(s -> {
+                                                       secondStarted.incrementAndGet();
+                                                       return completedFuture(s.length());
+                                                   }));
+        deadline.cancel();
+        first.complete("late");
+
+        assertFailsWithDeadline(chain);
+        assertThat(secondStarted.get(), is(0));
+    }
+
+    @Test
+    public void testFanInTrackedByDeadline() {
+        Deadline deadline = Deadline.after(1, TimeUnit.HOURS);
+        CompletableFuture<Integer> outstanding = new CompletableFuture<>();
+        FanIn<Integer> fanIn = Stream.of(completedFuture(1), outstanding)
+                                     .collect(FanIn.FanInCollector.toFanIn())
+                                     .trackBy(deadline);
+
+        deadline.cancel();
+        FanInResult<Integer> result = fanIn.get();
+
+        assertThat(result.getSuccessful(), hasSize(1));
+        assertThat(result.getThrowables().get(0), instanceOf(DeadlineExceededException.class));
+    }
+
+    @Test
+    public void testBoundedFanInSkipsTasksAfterDeadline() {
+        Deadline deadline = Deadline.after(1, TimeUnit.HOURS);
+        Stream<Supplier<CompletableFuture<Integer>>> tasks = IntStream.range(0, 10).mapToObj(i -> () -> {
+            if (i == 4) {
+                deadline.cancel();
+            }
+            return completedFuture(i);
+        });
+
+        FanInResult<Integer> result = FanIn.bounded(tasks.map(deadline::wrap), 1).join();
+
+        assertThat(result.getSuccessful(), is(IntStream.range(0, 5).boxed().collect(toList())));
+        assertThat(result.getThrowables(), hasSize(5));
+        assertThat(deadline.remaining(TimeUnit.NANOSECONDS), is(0L));
+    }
+
+    @Test
+    public void testFarAwayDeadline() {
+        Deadline deadline = Deadline.after(Long.MAX_VALUE, TimeUnit.DAYS);
+
+        assertThat(deadline.isExpired(), is(false));
+        assertThat(deadline.remaining(TimeUnit.DAYS), greaterThan(0L));
+    }
+
+    private static void assertFailsWithDeadline(final CompletableFuture<?> future) {
+        try {
+            future.join();
+            fail();
+        } catch (CompletionException e) {
+            assertThat(e.getCause(), instanceOf(DeadlineExceededException.class));
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.vosmann.miniutils.futures;
+
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Collecting futures into a FanIn, sequentially and with a parallel stream: FanInCollector, whose combiner links
+ * chunks, against the ImmutableList.Builder-based collector it replaced, whose combiner copies.
+ * <p>
+ * Run like FanInResultBenchmark, with FanInCollectorBenchmark as the pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanInCollectorBenchmark {
+
+    private static final Collector<CompletableFuture<Integer>, ImmutableList.Builder<CompletableFuture<Integer>>,
+            FanIn<Integer>> COPYING = Collector.of(ImmutableList.Builder::new, ImmutableList.Builder::add,
+                                                   (first, second) -> first.addAll(second.build()),
+                                                   builder -> new FanIn<>(builder.build()));
+
+    @Param({"1000000"})
+    private int size;
+
+    private List<CompletableFuture<Integer>> futures;
+
+    @Setup
+    public void createFutures() {
+        futures = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            futures.add(completedFuture(i));
+        }
+    }
+
+    @Benchmark
+    public FanIn<Integer> copyingSequential() {
+        return futures.stream().collect(COPYING);
+    }
+
+    @Benchmark
+    public FanIn<Integer> copyingParallel() {
+        return futures.parallelStream().collect(COPYING);
+    }
+
+    @Benchmark
+    public FanIn<Integer> chunkedSequential() {
+        return futures.stream().collect(FanIn.FanInCollector.toFanIn());
+    }
+
+    @Benchmark
+    public FanIn<Integer> chunkedParallel() {
+        return futures.parallelStream().collect(FanIn.FanInCollector.toFanIn());
+    }
+
+    /**
+     * Creating the futures as part of the stream, as callers usually do, e.g. mapping keys to requests.
+     */
+    @Benchmark
+    public FanIn<Integer> chunkedParallelMapped() {
+        return IntStream.range(0, size).parallel().mapToObj(CompletableFuture::completedFuture)
+                        .collect(FanIn.FanInCollector.toFanIn());
+    }
+
+    @Benchmark
+    public FanIn<Integer> copyingParallelMapped() {
+        return IntStream.range(0, size).parallel().mapToObj(CompletableFuture::completedFuture).collect(COPYING);
+    }
+
+}
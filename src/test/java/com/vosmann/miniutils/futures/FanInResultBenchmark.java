@@ -0,0 +1,102 @@
+package com.vosmann.miniutils.futures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Accumulating the results of a fan-in from several completing threads at once: FanInResult's builder, which other
+ * fan-ins such as Pipeline and Deletion use, and the ResultSlots that FanIn collects into.
+ * <p>
+ * Run with: mvn -Pjmh clean test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ * &amp;&amp; java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main FanInResultBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanInResultBenchmark {
+
+    private static final int THREADS = 4;
+    private static final RuntimeException FAILURE = new RuntimeException("Failed.");
+
+    @Param({"10000", "100000", "1000000"})
+    private int size;
+
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void startThreads() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopThreads() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public FanInResult<Integer> builder() throws Exception {
+        final FanInResult.Builder<Integer> builder = new FanInResult.Builder<>();
+        addFromAllThreads(i -> {
+            if (i % 100 == 0) {
+                builder.add(FAILURE);
+            } else {
+                builder.add(i);
+            }
+        });
+        return builder.build();
+    }
+
+    @Benchmark
+    public FanInResult<Integer> resultSlots() throws Exception {
+        final ResultSlots<Integer> slots = new ResultSlots<>(size);
+        addFromAllThreads(i -> {
+            if (i % 100 == 0) {
+                slots.setThrowable(i, FAILURE);
+            } else {
+                slots.setSuccessful(i, i);
+            }
+        });
+        return slots.build();
+    }
+
+    /**
+     * Each thread adds every THREADS-th result, as completing futures would, interleaved.
+     */
+    private void addFromAllThreads(final IntConsumer add) throws Exception {
+        final List<Future<?>> threads = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; ++t) {
+            final int first = t;
+            threads.add(executor.submit(() -> {
+                for (int i = first; i < size; i += THREADS) {
+                    add.accept(i);
+                }
+            }));
+        }
+        for (final Future<?> thread : threads) {
+            thread.get();
+        }
+    }
+
+}
@@ -3,11 +3,17 @@ package com.vosmann.miniutils.futures;
 import org.junit.Test;
 
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 public class FanInResultTest {
 
@@ -51,6 +57,29 @@ public class FanInResultTest {
         assertThat(result.getThrowables(), containsInAnyOrder(new TestException("no"), new TestException("bad")));
     }
 
+    @Test
+    public void testBuildConcurrently() throws InterruptedException {
+        FanInResult.Builder<Integer> builder = new FanInResult.Builder<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 1000; ++i) {
+            final int element = i;
+            executor.execute(() -> builder.add(element).add(new TestException("bad" + element)));
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        FanInResult<Integer> result = builder.build();
+        assertThat(result.getSuccessful(), hasSize(1000));
+        assertThat(result.getThrowables(), hasSize(1000));
+    }
+
+    @Test
+    public void testBuildWithNullResult() {
+        FanInResult<String> result = new FanInResult.Builder<String>().add((String) null).build();
+
+        assertThat(result.getSuccessful(), contains(nullValue()));
+    }
+
     @Test
     public void testConcatFullWithFull() {
         FanInResult<String> result1 = new FanInResult.Builder<String>().add("ok1")
@@ -105,6 +134,31 @@ public class FanInResultTest {
         assertThat(concatenated.getThrowables(), containsInAnyOrder(new TestException("bad")));
     }
 
+    @Test
+    public void testConcatManyKeepsOrder() {
+        FanInResult<Integer> concatenated = new FanInResult.Builder<Integer>().build();
+        for (int i = 0; i < 100_000; ++i) {
+            concatenated = concatenated.concat(FanInResult.success(i));
+        }
+        concatenated = concatenated.concat(FanInResult.failure(new TestException("bad")));
+
+        assertThat(concatenated.getSuccessful(), hasSize(100_000));
+        assertThat(concatenated.getSuccessful().get(0), is(0));
+        assertThat(concatenated.getSuccessful().get(99_999), is(99_999));
+        assertThat(concatenated.hasThrowables(), is(true));
+        assertThat(concatenated.getThrowables(), contains(new TestException("bad")));
+    }
+
+    @Test
+    public void testConcatSharesParts() {
+        FanInResult<String> shared = FanInResult.success("shared");
+        FanInResult<String> left = FanInResult.success("left").concat(shared);
+        FanInResult<String> right = shared.concat(FanInResult.success("right"));
+
+        assertThat(left.concat(right).getSuccessful(), contains("left", "shared", "shared", "right"));
+        assertThat(shared.getSuccessful(), contains("shared"));
+    }
+
     public static class TestException extends Exception {
 
         private String name;
@@ -0,0 +1,58 @@
+package com.vosmann.miniutils.futures;
+
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+
+import static com.vosmann.miniutils.futures.Futures.exceptionallyCompletedFuture;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+public class FanInStatsTest {
+
+    @Test
+    public void testRecordsEveryFutureAndEveryFanIn() throws InterruptedException {
+        FanInStats stats = new FanInStats();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+
+        new FanIn<>(asList(completedFuture("ok"), exceptionallyCompletedFuture(new NullPointerException("bad")), slow))
+                .listen(stats);
+        assertThat(stats.getFanIns(), is(0L));
+
+        Thread.sleep(5);
+        slow.complete("slow");
+
+        assertThat(stats.getFanIns(), is(1L));
+        assertThat(stats.getSuccessful(), is(2L));
+        assertThat(stats.getFailed(), is(1L));
+        assertThat(stats.getLatency().getCount(), is(3L));
+        assertThat(stats.getStragglerSpreadP50Millis(), greaterThanOrEqualTo(5.0));
+    }
+
+    @Test
+    public void testEmptyFanInCompletesRightAway() {
+        FanInStats stats = new FanInStats();
+
+        new FanIn<String>(asList()).listen(stats);
+
+        assertThat(stats.getFanIns(), is(1L));
+    }
+
+    @Test
+    public void testRegisterWithJmx() throws Exception {
+        FanInStats stats = new FanInStats().register("test");
+        FanIn.of(completedFuture("ok")).listen(stats);
+
+        ObjectName name = new ObjectName("com.vosmann.miniutils.futures:type=FanInStats,name=\"test\"");
+        Object successful = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Successful");
+        stats.unregister("test");
+
+        assertThat(successful, is(1L));
+    }
+
+}
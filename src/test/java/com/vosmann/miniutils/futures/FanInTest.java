@@ -2,14 +2,32 @@ package com.vosmann.miniutils.futures;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import static com.vosmann.miniutils.futures.Futures.exceptionallyCompletedFuture;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.summingInt;
+import static java.util.stream.Collectors.summingLong;
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.hasSize;
@@ -78,6 +96,20 @@ public class FanInTest {
         assertThat(result.getThrowables().get(0).getMessage(), is("ah"));
     }
 
+    @Test
+    public void testGetKeepsInputOrderRegardlessOfCompletionOrder() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        CompletableFuture<String> third = new CompletableFuture<>();
+
+        FanIn<String> fanIn = new FanIn<>(asList(first, second, third));
+        third.complete("third");
+        second.complete(null);
+        first.complete("first");
+
+        assertThat(fanIn.get().getSuccessful(), is(asList("first", null, "third")));
+    }
+
     @Test
     public void testWhenCompleteAllSucceed() throws InterruptedException {
 
@@ -99,6 +131,224 @@ public class FanInTest {
         assertThat(resultString.toString(), is("successful: okgood throwables: bad"));
     }
 
+    @Test
+    public void testForEachDeliversInCompletionOrder() {
+        CompletableFuture<String> slowFuture = new CompletableFuture<>();
+        CompletableFuture<String> fastFuture = new CompletableFuture<>();
+        CompletableFuture<String> badFuture = new CompletableFuture<>();
+
+        List<String> delivered = new ArrayList<>();
+        CompletableFuture<Void> done = new FanIn<>(asList(slowFuture, fastFuture, badFuture))
+                .forEach(delivered::add, throwable -> delivered.add(throwable.getMessage()));
+
+        fastFuture.complete("fast");
+        assertThat(delivered, is(singletonList("fast")));
+        assertThat("Should not be done before the slow future.", !done.isDone());
+
+        badFuture.completeExceptionally(new NullPointerException("bad"));
+        slowFuture.complete("slow");
+
+        assertThat(delivered, is(asList("fast", "bad", "slow")));
+        assertThat("Should be done.", done.isDone());
+    }
+
+    @Test
+    public void testCompletionOrder() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        CompletableFuture<String> third = new CompletableFuture<>();
+
+        Iterator<CompletableFuture<String>> completed =
+                new FanIn<>(asList(first, second, third)).completionOrder().iterator();
+
+        third.complete("third");
+        first.completeExceptionally(new NullPointerException("first"));
+        second.complete("second");
+
+        assertThat(completed.next().join(), is("third"));
+        assertThat(completed.next().isCompletedExceptionally(), is(true));
+        assertThat(completed.next().join(), is("second"));
+        assertThat(completed.hasNext(), is(false));
+    }
+
+    @Test
+    public void testBoundedNeverExceedsMaxInFlight() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        Stream<Supplier<CompletableFuture<Integer>>> tasks = IntStream.range(0, 200).mapToObj(i -> () -> {
+            maxSeen.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                inFlight.decrementAndGet();
+                return i;
+            }, executor);
+        });
+
+        FanInResult<Integer> result = FanIn.bounded(tasks, 3).join();
+        executor.shutdown();
+
+        assertThat(result.getSuccessful(), hasSize(200));
+        assertThat(result.getThrowables(), empty());
+        assertThat(maxSeen.get() <= 3, is(true));
+    }
+
+    @Test
+    public void testBoundedCollectsFailedTasks() {
+        Stream<Supplier<CompletableFuture<String>>> tasks = Stream.of(
+                () -> completedFuture("ok"),
+                () -> exceptionallyCompletedFuture(new NullPointerException("ah")),
+                () -> {
+                    throw new IllegalStateException("not started");
+                });
+
+        FanInResult<String> result = FanIn.bounded(tasks, 2).join();
+
+        assertThat(result.getSuccessful(), is(singletonList("ok")));
+        assertThat(result.getThrowables(), hasSize(2));
+    }
+
+    @Test
+    public void testBoundedWithManySynchronouslyCompletingTasks() {
+        Stream<Supplier<CompletableFuture<Integer>>> tasks =
+                IntStream.range(0, 100_000).mapToObj(i -> () -> completedFuture(i));
+
+        FanInResult<Integer> result = FanIn.bounded(tasks, 10).join();
+
+        assertThat(result.getSuccessful(), hasSize(100_000));
+    }
+
+    @Test
+    public void testFirstSuccessesCancelsStragglers() {
+        CompletableFuture<String> fast = new CompletableFuture<>();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        CompletableFuture<String> slower = new CompletableFuture<>();
+
+        FanIn<String> fanIn = new FanIn<>(asList(fast, slow, slower)).withPolicy(CompletionPolicy.firstSuccesses(1));
+        fast.complete("fast");
+        FanInResult<String> result = fanIn.get();
+
+        assertThat(result.getSuccessful(), is(singletonList("fast")));
+        assertThat(result.getThrowables(), empty());
+        assertThat(slow.isCancelled(), is(true));
+        assertThat(slower.isCancelled(), is(true));
+    }
+
+    @Test
+    public void testResultsAreFixedOnceThePolicyIsMet() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 500; ++round) {
+                List<CompletableFuture<Integer>> futures = IntStream.range(0, 256)
+                                                                    .mapToObj(i -> new CompletableFuture<Integer>())
+                                                                    .collect(toList());
+                FanIn<Integer> fanIn = new FanIn<>(futures).withPolicy(CompletionPolicy.firstSuccesses(128));
+                List<Future<?>> completions = IntStream
+                        .range(0, 8)
+                        .mapToObj(t -> executor.submit(() -> IntStream.range(0, 256).filter(i -> i % 8 == t)
+                                                                      .forEach(i -> futures.get(i).complete(i))))
+                        .collect(toList());
+
+                FanInResult<Integer> first = fanIn.get();
+                for (Future<?> completion : completions) {
+                    completion.get();
+                }
+
+                assertThat(first.getSuccessful().size() >= 128, is(true));
+                assertThat(fanIn.get().getSuccessful(), is(first.getSuccessful()));
+                assertThat(fanIn.getIndexed().getSuccessfulCount(), is(first.getSuccessful().size()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailFast() {
+        CompletableFuture<String> ok = new CompletableFuture<>();
+        CompletableFuture<String> bad = new CompletableFuture<>();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+
+        FanIn<String> fanIn = new FanIn<>(asList(ok, bad, slow)).withPolicy(CompletionPolicy.failFast());
+        ok.complete("ok");
+        bad.completeExceptionally(new NullPointerException("bad"));
+        FanInResult<String> result = fanIn.get();
+
+        assertThat(result.getSuccessful(), is(singletonList("ok")));
+        assertThat(result.getThrowables(), hasSize(1));
+        assertThat(slow.isCancelled(), is(true));
+    }
+
+    @Test
+    public void testSuccessRatioUnreachable() {
+        CompletableFuture<String> bad1 = new CompletableFuture<>();
+        CompletableFuture<String> bad2 = new CompletableFuture<>();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+
+        FanIn<String> fanIn = new FanIn<>(asList(bad1, bad2, slow)).withPolicy(CompletionPolicy.successRatio(0.5));
+        bad1.completeExceptionally(new NullPointerException("bad1"));
+        bad2.completeExceptionally(new NullPointerException("bad2"));
+        FanInResult<String> result = fanIn.get();
+
+        assertThat(result.getSuccessful(), empty());
+        assertThat(result.getThrowables(), hasSize(2));
+        assertThat(slow.isCancelled(), is(true));
+    }
+
+    @Test
+    public void testGetWithTimeoutCancelsStragglers() {
+        CompletableFuture<String> ok = completedFuture("ok");
+        CompletableFuture<String> slow = new CompletableFuture<>();
+
+        FanInResult<String> result = new FanIn<>(asList(ok, slow)).get(1, TimeUnit.MILLISECONDS);
+
+        assertThat(result.getSuccessful(), is(singletonList("ok")));
+        assertThat(result.getThrowables(), hasSize(1));
+        assertThat(result.getThrowables().get(0), instanceOf(CancellationException.class));
+        assertThat(slow.isCancelled(), is(true));
+    }
+
+    @Test
+    public void testCollectInParallelKeepsEncounterOrder() {
+        FanInResult<Integer> result = IntStream.range(0, 100_000)
+                                               .parallel()
+                                               .mapToObj(CompletableFuture::completedFuture)
+                                               .collect(FanIn.FanInCollector.toFanIn())
+                                               .get();
+
+        assertThat(result.getSuccessful(), is(IntStream.range(0, 100_000).boxed().collect(toList())));
+    }
+
+    @Test
+    public void testReduce() {
+        List<CompletableFuture<Integer>> futures = asList(completedFuture(3), completedFuture(4),
+                                                          exceptionallyCompletedFuture(new NullPointerException("a")),
+                                                          exceptionallyCompletedFuture(new NullPointerException("b")),
+                                                          exceptionallyCompletedFuture(new IllegalStateException()));
+
+        FanInReduction<Integer, Map<Class<?>, Long>> reduction =
+                new FanIn<>(futures).reduce(summingInt(size -> size), groupingBy(Object::getClass, counting())).join();
+
+        assertThat(reduction.getSuccessful(), is(7));
+        assertThat(reduction.getThrowables().get(NullPointerException.class), is(2L));
+        assertThat(reduction.getThrowables().get(IllegalStateException.class), is(1L));
+        assertThat(reduction.getSuccessfulCount(), is(2L));
+        assertThat(reduction.getThrowableCount(), is(3L));
+    }
+
+    @Test
+    public void testBoundedReduce() {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Stream<Supplier<CompletableFuture<Long>>> tasks = LongStream.rangeClosed(1, 10_000).mapToObj(
+                i -> () -> CompletableFuture.supplyAsync(() -> i, executor));
+
+        FanInReduction<Long, Long> reduction = FanIn.bounded(tasks, 16, summingLong(i -> i), counting()).join();
+        executor.shutdown();
+
+        assertThat(reduction.getSuccessful(), is(50_005_000L));
+        assertThat(reduction.getThrowables(), is(0L));
+    }
+
     // Write succeeded and failed futures into string.
     private void toString(FanInResult<String> multiFutureResult, StringBuilder result) {
 
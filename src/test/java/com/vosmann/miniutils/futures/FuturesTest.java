@@ -0,0 +1,320 @@
+package com.vosmann.miniutils.futures;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static com.vosmann.miniutils.futures.Futures.exceptionallyCompletedFuture;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class FuturesTest {
+
+    @Test
+    public void testHedgeFastAttemptStartsNoBackup() {
+        List<CompletableFuture<String>> attempts = new ArrayList<>();
+        Supplier<CompletableFuture<String>> attempt = () -> {
+            attempts.add(completedFuture("fast"));
+            return attempts.get(attempts.size() - 1);
+        };
+
+        String result = Futures.hedge(attempt, HedgeDelay.fixed(1, TimeUnit.SECONDS)).join();
+
+        assertThat(result, is("fast"));
+        assertThat(attempts, hasSize(1));
+    }
+
+    @Test
+    public void testHedgeSlowAttemptIsOvertakenAndCancelled() {
+        List<CompletableFuture<String>> attempts = new ArrayList<>();
+        Supplier<CompletableFuture<String>> attempt = () -> {
+            CompletableFuture<String> future = attempts.isEmpty() ? new CompletableFuture<>()
+                                                                  : completedFuture("backup");
+            attempts.add(future);
+            return future;
+        };
+
+        String result = Futures.hedge(attempt, HedgeDelay.fixed(5, TimeUnit.MILLISECONDS)).join();
+
+        assertThat(result, is("backup"));
+        assertThat(attempts, hasSize(2));
+        assertThat(attempts.get(0).isCancelled(), is(true));
+    }
+
+    @Test
+    public void testHedgeFailedAttemptStartsBackupRightAway() {
+        List<CompletableFuture<String>> attempts = new ArrayList<>();
+        Supplier<CompletableFuture<String>> attempt = () -> {
+            CompletableFuture<String> future = attempts.isEmpty()
+                    ? exceptionallyCompletedFuture(new IllegalStateException("first"))
+                    : completedFuture("backup");
+            attempts.add(future);
+            return future;
+        };
+
+        String result = Futures.hedge(attempt, HedgeDelay.fixed(1, TimeUnit.HOURS)).join();
+
+        assertThat(result, is("backup"));
+    }
+
+    @Test
+    public void testHedgeFailsWhenBothAttemptsFail() {
+        Supplier<CompletableFuture<String>> attempt =
+                () -> exceptionallyCompletedFuture(new IllegalStateException("failed"));
+
+        try {
+            Futures.hedge(attempt, HedgeDelay.fixed(1, TimeUnit.HOURS)).join();
+            fail("Hedge should have failed.");
+        } catch (CompletionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+    }
+
+    @Test
+    public void testPercentileHedgeDelayUsesFallbackUntilEnoughSamples() {
+        HedgeDelay delay = HedgeDelay.percentile(0.9, 7, TimeUnit.MILLISECONDS);
+        assertThat(delay.nanos(), is(TimeUnit.MILLISECONDS.toNanos(7)));
+
+        for (int i = 0; i < 1000; ++i) {
+            delay.record(100);
+        }
+        assertThat(delay.nanos() < 120, is(true));
+    }
+
+    @Test
+    public void testRetrySucceedsAfterFailures() {
+        AtomicInteger attempts = new AtomicInteger();
+        Supplier<CompletableFuture<String>> attempt = () -> attempts.incrementAndGet() < 3
+                ? exceptionallyCompletedFuture(new IllegalStateException("flaky"))
+                : completedFuture("ok");
+
+        String result = Futures.retry(attempt, fastRetries(5).build()).join();
+
+        assertThat(result, is("ok"));
+        assertThat(attempts.get(), is(3));
+    }
+
+    @Test
+    public void testRetryReportsAttemptHistory() {
+        AtomicInteger attempts = new AtomicInteger();
+        Supplier<CompletableFuture<String>> attempt =
+                () -> exceptionallyCompletedFuture(new IllegalStateException("attempt " + attempts.incrementAndGet()));
+
+        try {
+            Futures.retry(attempt, fastRetries(3).build()).join();
+            fail("Retry should have failed.");
+        } catch (CompletionException e) {
+            RetriesExhaustedException exhausted = (RetriesExhaustedException) e.getCause();
+            assertThat(exhausted.getAttempts(), is(3));
+            assertThat(exhausted.getCause().getMessage(), is("attempt 3"));
+            assertThat(exhausted.getSuppressed()[0].getMessage(), is("attempt 1"));
+            assertThat(exhausted.getSuppressed()[1].getMessage(), is("attempt 2"));
+        }
+    }
+
+    @Test
+    public void testRetryStopsOnNonRetryableFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+        Supplier<CompletableFuture<String>> attempt = () -> {
+            attempts.incrementAndGet();
+            return exceptionallyCompletedFuture(new IllegalArgumentException("permanent"));
+        };
+        RetryPolicy policy = fastRetries(5).retryOn(e -> e instanceof IllegalStateException).build();
+
+        try {
+            Futures.retry(attempt, policy).join();
+            fail("Retry should have failed.");
+        } catch (CompletionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+            assertThat(attempts.get(), is(1));
+        }
+    }
+
+    @Test
+    public void testRetryDeadlineCancelsHangingAttempt() {
+        AtomicInteger attempts = new AtomicInteger();
+        List<CompletableFuture<String>> started = new ArrayList<>();
+        Supplier<CompletableFuture<String>> attempt = () -> {
+            CompletableFuture<String> future = attempts.incrementAndGet() == 1
+                    ? exceptionallyCompletedFuture(new IllegalStateException("flaky"))
+                    : new CompletableFuture<>();
+            started.add(future);
+            return future;
+        };
+        RetryPolicy policy = fastRetries(5).deadline(50, TimeUnit.MILLISECONDS).build();
+
+        try {
+            Futures.retry(attempt, policy).join();
+            fail("Retry should have failed.");
+        } catch (CompletionException e) {
+            RetriesExhaustedException exhausted = (RetriesExhaustedException) e.getCause();
+            assertThat(exhausted.getCause(), instanceOf(DeadlineExceededException.class));
+            assertThat(exhausted.getSuppressed()[0].getMessage(), is("flaky"));
+            assertThat(attempts.get(), is(2));
+            assertThat(started.get(1).isCancelled(), is(true));
+        }
+    }
+
+    @Test
+    public void testRetryDelaysDontOverflow() {
+        RetryPolicy policy = new RetryPolicy.Builder().backoff(1, Long.MAX_VALUE, TimeUnit.DAYS).build();
+
+        for (int attempt = 1; attempt < 100; ++attempt) {
+            assertThat(policy.nextDelayNanos(attempt) >= 0, is(true));
+        }
+    }
+
+    @Test
+    public void testUnwrap() {
+        IllegalStateException cause = new IllegalStateException("cause");
+
+        assertThat(Futures.unwrap(new CompletionException(new ExecutionException(cause))), is(cause));
+        assertThat(Futures.unwrap(cause), is(cause));
+    }
+
+    @Test
+    public void testPaginateFollowsTokens() {
+        Function<Integer, Optional<CompletableFuture<Integer>>> next =
+                page -> page < 4 ? Optional.of(completedFuture(page + 1)) : Optional.empty();
+
+        List<Integer> pages = Futures.paginate(() -> completedFuture(0), next).collect(toList());
+
+        assertThat(pages, is(asList(0, 1, 2, 3, 4)));
+    }
+
+    @Test
+    public void testPaginateIsLazyAndPrefetches() {
+        AtomicInteger firstRequests = new AtomicInteger();
+        List<CompletableFuture<Integer>> requests = new ArrayList<>();
+        Iterator<Integer> pages = Futures.paginate(() -> completedFuture(firstRequests.incrementAndGet() - 1),
+                                                   (Integer page) -> {
+                                                       requests.add(new CompletableFuture<>());
+                                                       return Optional.of(requests.get(requests.size() - 1));
+                                                   }).iterator();
+        assertThat(firstRequests.get(), is(0));
+
+        assertThat(pages.next(), is(0));
+        assertThat(requests, hasSize(1));
+
+        // Page 2 is requested as soon as page 1 arrives, before page 1 is consumed, but no further.
+        requests.get(0).complete(1);
+        assertThat(requests, hasSize(2));
+        requests.get(1).complete(2);
+        assertThat(requests, hasSize(2));
+
+        assertThat(pages.next(), is(1));
+        assertThat(requests, hasSize(3));
+    }
+
+    @Test
+    public void testPaginateFailure() {
+        Stream<Integer> pages = Futures.paginate(() -> completedFuture(0),
+                                                 (Integer page) -> Optional.of(exceptionallyCompletedFuture(
+                                                         new IllegalStateException())));
+        Iterator<Integer> iterator = pages.iterator();
+
+        assertThat(iterator.next(), is(0));
+        try {
+            iterator.next();
+            fail("Second page should have failed.");
+        } catch (CompletionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+    }
+
+    @Test
+    public void testPaginateCloseCancels() {
+        CompletableFuture<Integer> second = new CompletableFuture<>();
+        Stream<Integer> pages = Futures.paginate(() -> completedFuture(0), (Integer page) -> Optional.of(second));
+        pages.iterator().next();
+
+        pages.close();
+
+        assertThat(second.isCancelled(), is(true));
+    }
+
+    @Test
+    public void testForEachPageConsumesPagesAsTheyArrive() {
+        List<CompletableFuture<Integer>> requests = new ArrayList<>();
+        List<Integer> consumed = new ArrayList<>();
+        CompletableFuture<Void> done = Futures.forEachPage(() -> completedFuture(0), (Integer page) -> {
+            if (page == 3) {
+                return Optional.empty();
+            }
+            requests.add(new CompletableFuture<>());
+            return Optional.of(requests.get(requests.size() - 1));
+        }, consumed::add);
+
+        assertThat(consumed, is(asList(0)));
+        assertThat(requests, hasSize(1));
+
+        requests.get(0).complete(1);
+        assertThat(consumed, is(asList(0, 1)));
+        requests.get(1).complete(2);
+        assertThat(done.isDone(), is(false));
+        requests.get(2).complete(3);
+
+        assertThat(consumed, is(asList(0, 1, 2, 3)));
+        assertThat(done.isDone(), is(true));
+    }
+
+    @Test
+    public void testForEachPageHandlesLongRunsOfArrivedPages() {
+        AtomicInteger consumed = new AtomicInteger();
+        Futures.forEachPage(() -> completedFuture(0),
+                            (Integer page) -> page < 100000 ? Optional.of(completedFuture(page + 1)) : Optional.empty(),
+                            page -> consumed.incrementAndGet()).join();
+
+        assertThat(consumed.get(), is(100001));
+    }
+
+    @Test
+    public void testForEachPageFailure() {
+        CompletableFuture<Void> done = Futures.forEachPage(
+                () -> completedFuture(0),
+                (Integer page) -> Optional.of(exceptionallyCompletedFuture(new IllegalStateException())),
+                page -> { });
+
+        try {
+            done.join();
+            fail("Walking the pages should have failed.");
+        } catch (CompletionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+    }
+
+    @Test
+    public void testForEachPageCancelCancelsRequest() {
+        CompletableFuture<Integer> second = new CompletableFuture<>();
+        List<Integer> consumed = new ArrayList<>();
+        CompletableFuture<Void> done = Futures.forEachPage(() -> completedFuture(0),
+                                                           (Integer page) -> Optional.of(second), consumed::add);
+
+        done.cancel(false);
+
+        assertThat(second.isCancelled(), is(true));
+        assertThat(consumed, is(asList(0)));
+    }
+
+    private RetryPolicy.Builder fastRetries(int maxAttempts) {
+        return new RetryPolicy.Builder().maxAttempts(maxAttempts).backoff(1, 5, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.vosmann.miniutils.futures;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.vosmann.miniutils.futures.Futures.exceptionallyCompletedFuture;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class IndexedFanInResultTest {
+
+    private final List<CompletableFuture<String>> futures =
+            asList(completedFuture("one"), exceptionallyCompletedFuture(new NullPointerException("bad")),
+                   completedFuture("three"));
+
+    @Test
+    public void testSlotsAreAlignedWithFutures() {
+        IndexedFanInResult<String> result = new FanIn<>(futures).getIndexed();
+
+        assertThat(result.size(), is(3));
+        assertThat(result.get(0), is("one"));
+        assertThat(result.isFailed(1), is(true));
+        assertThat(result.getThrowable(1).getMessage(), is("bad"));
+        assertThat(result.get(2), is("three"));
+        assertThat(result.getThrowable(2), is(nullValue()));
+        assertThat(result.getSuccessfulCount(), is(2));
+        assertThat(result.getThrowables(), hasSize(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetFailedSlot() {
+        new FanIn<>(futures).getIndexed().get(1);
+    }
+
+    @Test
+    public void testEmptySlotsOfCancelledStragglers() {
+        CompletableFuture<String> straggler = new CompletableFuture<>();
+
+        IndexedFanInResult<String> result = new FanIn<>(asList(completedFuture("fast"), straggler))
+                .withPolicy(CompletionPolicy.firstSuccesses(1))
+                .getIndexed();
+
+        assertThat(result.isSuccessful(0), is(true));
+        assertThat(result.isSuccessful(1), is(false));
+        assertThat(result.isFailed(1), is(false));
+        assertThat(result.getThrowables(), empty());
+    }
+
+    @Test
+    public void testLongs() {
+        LongFanInResult result = new FanIn<>(futures).getIndexedLongs(String::length);
+
+        assertThat(result.getLong(0), is(3L));
+        assertThat(result.isFailed(1), is(true));
+        assertThat(result.getSuccessful().sum(), is(8L));
+    }
+
+    @Test
+    public void testInts() {
+        IntFanInResult result = new FanIn<>(futures).getIndexedInts(String::length);
+
+        assertThat(result.getInt(2), is(5));
+        assertThat(result.getSuccessful().toArray(), is(new int[]{3, 5}));
+    }
+
+    @Test
+    public void testDoubles() {
+        DoubleFanInResult result = new FanIn<>(futures).getIndexedDoubles(s -> s.length() / 2.0);
+
+        assertThat(result.getDouble(0), is(1.5));
+        assertThat(result.getSuccessful().sum(), is(4.0));
+    }
+
+}
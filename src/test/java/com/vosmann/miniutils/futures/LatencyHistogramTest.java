@@ -0,0 +1,47 @@
+package com.vosmann.miniutils.futures;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getPercentile(0.99), is(0L));
+        assertThat(histogram.getMean(), is(0.0));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 4; ++value) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.getPercentile(0.5), is(2L));
+        assertThat(histogram.getPercentile(1), is(4L));
+        assertThat(histogram.getMax(), is(4L));
+        assertThat(histogram.getMean(), is(2.5));
+    }
+
+    @Test
+    public void testPercentileIsWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1_000_000; ++value) {
+            histogram.record(value * 1000);
+        }
+
+        long p99 = histogram.getPercentile(0.99);
+        assertThat(p99, greaterThanOrEqualTo(990_000_000L));
+        assertThat(p99, lessThanOrEqualTo((long) (990_000_000L * 1.125)));
+        assertThat(histogram.getPercentile(1), is(1_000_000_000L));
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.vosmann.miniutils.futures;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.vosmann.miniutils.futures.Futures.exceptionallyCompletedFuture;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class PipelineTest {
+
+    @Test
+    public void testElementsPassThroughAllStages() {
+        PipelineRun<String> run = Pipeline.from(Stream.of(1, 2, 3))
+                                          .then("double", 2, 2, i -> completedFuture(i * 2))
+                                          .then("print", 1, 1, i -> completedFuture("v" + i))
+                                          .run();
+
+        FanInResult<String> result = run.getResult().join();
+
+        assertThat(result.getSuccessful(), containsInAnyOrder("v2", "v4", "v6"));
+        assertThat(result.hasThrowables(), is(false));
+    }
+
+    @Test
+    public void testFailuresNameTheirStage() {
+        PipelineRun<Integer> run = Pipeline.from(Stream.of(1, 2, 3, 4))
+                                           .then("odd", 4, 4, i -> i % 2 == 1
+                                                   ? exceptionallyCompletedFuture(new IllegalStateException())
+                                                   : completedFuture(i))
+                                           .then("four", 4, 4, i -> i == 4
+                                                   ? exceptionallyCompletedFuture(new IllegalArgumentException())
+                                                   : completedFuture(i))
+                                           .run();
+
+        FanInResult<Integer> result = run.getResult().join();
+
+        assertThat(result.getSuccessful(), containsInAnyOrder(2));
+        assertThat(result.getThrowables(), hasSize(3));
+        long oddFailures = result.getThrowables().stream()
+                                 .filter(t -> ((StageException) t).getStage().equals("odd"))
+                                 .peek(t -> assertThat(t.getCause(), instanceOf(IllegalStateException.class)))
+                                 .count();
+        assertThat(oddFailures, is(2L));
+        assertThat(run.getStats().get(0).getFailed(), is(2L));
+        assertThat(run.getStats().get(1).getFailed(), is(1L));
+        assertThat(run.getStats().get(1).getSucceeded(), is(1L));
+    }
+
+    @Test
+    public void testElementsMoveOnBeforeTheirStageIsDone() {
+        List<CompletableFuture<Integer>> first = new ArrayList<>();
+        List<Integer> second = new ArrayList<>();
+        PipelineRun<Integer> run = Pipeline.from(Stream.of(1, 2, 3))
+                                           .then("first", 3, 3, i -> {
+                                               CompletableFuture<Integer> future = new CompletableFuture<>();
+                                               first.add(future);
+                                               return future;
+                                           })
+                                           .then("second", 1, 1, i -> {
+                                               second.add(i);
+                                               return completedFuture(i);
+                                           })
+                                           .run();
+        assertThat(first, hasSize(3));
+
+        first.get(1).complete(20);
+
+        assertThat(second, is(Arrays.asList(20)));
+        assertThat(run.getResult().isDone(), is(false));
+        first.get(0).complete(10);
+        first.get(2).complete(30);
+        assertThat(run.getResult().join().getSuccessful(), containsInAnyOrder(10, 20, 30));
+    }
+
+    @Test
+    public void testSlowStageHoldsBackTheSource() {
+        AtomicInteger pulled = new AtomicInteger();
+        List<CompletableFuture<Integer>> slow = new ArrayList<>();
+        PipelineRun<Integer> run = Pipeline.from(IntStream.range(0, 1000).boxed().peek(i -> pulled.incrementAndGet()))
+                                           .then("fast", 2, 3, i -> completedFuture(i))
+                                           .then("slow", 2, 4, i -> {
+                                               CompletableFuture<Integer> future = new CompletableFuture<>();
+                                               slow.add(future);
+                                               return future;
+                                           })
+                                           .run();
+
+        // Slow: 2 running, 4 queued. Fast: 2 done but waiting. Source: 3 queued for fast.
+        assertThat(pulled.get(), is(11));
+        assertThat(run.getStats().get(1).getRunning(), is(2));
+        assertThat(run.getStats().get(1).getQueued(), is(4));
+        assertThat(run.getStats().get(0).getWaitingForNext(), is(2));
+        assertThat(run.getStats().get(0).getQueued(), is(3));
+
+        for (int i = 0; i < slow.size(); ++i) {
+            slow.get(i).complete(i);
+            assertThat(pulled.get() - i - 1, lessThanOrEqualTo(11));
+        }
+        FanInResult<Integer> result = run.getResult().join();
+        assertThat(result.getSuccessful(), hasSize(1000));
+        assertThat(run.getStats().get(1).getSucceeded(), is(1000L));
+    }
+
+    @Test
+    public void testNullElements() {
+        PipelineRun<String> run = Pipeline.from(Stream.of((String) null))
+                                          .then("identity", 1, 1, s -> completedFuture(s))
+                                          .run();
+
+        assertThat(run.getResult().join().getSuccessful().get(0), is(nullValue()));
+    }
+
+    @Test
+    public void testFailingSourceFailsTheRun() {
+        Stream<Integer> source = Stream.of(1, 2).map(i -> {
+            throw new IllegalStateException();
+        });
+        PipelineRun<Integer> run = Pipeline.from(source).then("identity", 1, 1, i -> completedFuture(i)).run();
+
+        assertThat(run.getResult().isCompletedExceptionally(), is(true));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoStages() {
+        Pipeline.from(Stream.of(1)).run();
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.vosmann.miniutils.futures;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
+
+public class PriorityExecutorTest {
+
+    private final PriorityExecutor executor = new PriorityExecutor.Builder().threads(1).name("test-priority").build();
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testSharesByWeight() {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(200);
+        List<Priority> order = new CopyOnWriteArrayList<>();
+        executor.execute(() -> awaitUninterruptibly(blocked));
+        for (int i = 0; i < 100; ++i) {
+            executor.execute(Priority.BULK, () -> {
+                order.add(Priority.BULK);
+                done.countDown();
+            });
+            executor.execute(Priority.INTERACTIVE, () -> {
+                order.add(Priority.INTERACTIVE);
+                done.countDown();
+            });
+        }
+        assertThat(executor.getQueueDepth(Priority.BULK), is(100));
+
+        blocked.countDown();
+        awaitUninterruptibly(done);
+
+        long bulkFirst = order.subList(0, 65).stream().filter(priority -> priority == Priority.BULK).count();
+        assertThat(bulkFirst, lessThanOrEqualTo(2L));
+        assertThat(order, hasSize(200));
+    }
+
+    @Test
+    public void testRecordsWaitTimes() {
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(Priority.BULK, done::countDown);
+        awaitUninterruptibly(done);
+
+        assertThat(executor.getWaitTimes(Priority.BULK).getCount(), is(1L));
+        assertThat(executor.getWaitTimes(Priority.INTERACTIVE).getCount(), is(0L));
+        assertThat(executor.getQueueDepth(Priority.BULK), is(0));
+    }
+
+    @Test
+    public void testKeepsRunningAfterFailingTask() {
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            throw new IllegalStateException("Expected by the test.");
+        });
+        executor.execute(done::countDown);
+
+        assertThat(awaitUninterruptibly(done, 1, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectsAfterShutdown() {
+        executor.shutdown();
+        executor.execute(() -> {
+        });
+    }
+
+    @Test
+    public void testStartsFanInTasksOnExecutor() {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        Stream<Supplier<CompletableFuture<Integer>>> tasks = IntStream.range(0, 20).mapToObj(i -> () -> {
+            threads.add(Thread.currentThread().getName());
+            return completedFuture(i);
+        });
+
+        FanInResult<Integer> result = FanIn.bounded(tasks, 4, executor.withPriority(Priority.BULK)).join();
+
+        assertThat(result.getSuccessful(), hasSize(20));
+        assertThat(threads, everyItem(startsWith("test-priority")));
+    }
+
+    @Test
+    public void testWrap() {
+        CompletableFuture<String> result = executor.wrap(Priority.INTERACTIVE,
+                                                         () -> completedFuture(Thread.currentThread().getName()))
+                                                   .get();
+
+        assertThat(result.join(), startsWith("test-priority"));
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.vosmann.miniutils.futures.FanInResult;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.vosmann.miniutils.s3.StubS3Client.BUCKET;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+public class DeletionTest {
+
+    private static final Executor SAME_THREAD = Runnable::run;
+
+    private final StubS3Client client = new StubS3Client(100);
+
+    @Test
+    public void testDeletesInBatches() {
+        putKeys("logs/", 2500);
+        client.put("other/1", "x", new Date());
+        Listing listing = new Lister(client, SAME_THREAD).at(Address.of(BUCKET, "logs/"));
+
+        FanInResult<Integer> result = new Deletion.Builder().listing(listing).client(client).build().start().join();
+
+        assertThat(result.getSuccessful().stream().mapToInt(Integer::intValue).sum(), is(2500));
+        assertThat(result.hasThrowables(), is(false));
+        assertThat(client.getDeleteObjectsCalls(), is(3));
+        assertThat(client.contains("logs/0000"), is(false));
+        assertThat(client.contains("other/1"), is(true));
+    }
+
+    @Test
+    public void testRunDeletesListing() {
+        putKeys("logs/", 10);
+
+        new Deletion(new Lister(client, SAME_THREAD).at(Address.of(BUCKET, "logs/")), client).run();
+
+        assertThat(client.contains("logs/0009"), is(false));
+    }
+
+    @Test
+    public void testKeepsBatchesInFlightBounded() {
+        putKeys("logs/", 1000);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        StubS3Client slow = new StubS3Client() {
+            @Override
+            public DeleteObjectsResult deleteObjects(final DeleteObjectsRequest request) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                    return DeletionTest.this.client.deleteObjects(request);
+                } catch (final InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+
+        Stream<S3ObjectSummary> summaries = new Lister(client).stream(Address.of(BUCKET, "logs/"));
+        FanInResult<Integer> result = new Deletion.Builder().summaries(summaries).client(slow).batchSize(10)
+                                                            .batchesInFlight(3).build().start().join();
+
+        assertThat(result.getSuccessful(), hasSize(100));
+        assertThat(maxInFlight.get(), lessThanOrEqualTo(3));
+        assertThat(client.contains("logs/0999"), is(false));
+    }
+
+    @Test
+    public void testReportsFailedKeys() {
+        StubS3Client partlyFailing = new StubS3Client() {
+            @Override
+            public DeleteObjectsResult deleteObjects(final DeleteObjectsRequest request) {
+                String first = request.getKeys().get(0).getKey();
+                if (first.equals("logs/0010")) {
+                    throw new AmazonServiceException("Slow down.");
+                }
+                List<DeleteObjectsRequest.KeyVersion> keys = request.getKeys();
+                if (first.equals("logs/0020")) {
+                    MultiObjectDeleteException.DeleteError error = new MultiObjectDeleteException.DeleteError();
+                    error.setKey("logs/0025");
+                    error.setCode("AccessDenied");
+                    error.setMessage("Access Denied");
+                    keys = keys.stream().filter(key -> !key.getKey().equals("logs/0025")).collect(toList());
+                    DeletionTest.this.client.deleteObjects(request.withKeys(keys));
+                    throw new MultiObjectDeleteException(Collections.singletonList(error), Collections.emptyList());
+                }
+                return DeletionTest.this.client.deleteObjects(request);
+            }
+        };
+
+        FanInResult<Integer> result = new Deletion.Builder().summaries(summaries("logs/", 30)).client(partlyFailing)
+                                                            .batchSize(10).executor(SAME_THREAD).build().start().join();
+
+        assertThat(result.getSuccessful(), is(Arrays.asList(10, 9)));
+        assertThat(result.getThrowables(), hasSize(11));
+        List<DeletionException> failures = result.getThrowables().stream().map(DeletionException.class::cast)
+                                                 .collect(toList());
+        assertThat(failures.get(0).getKey(), is("logs/0010"));
+        assertThat(failures.get(0).getCode(), is(nullValue()));
+        assertThat(failures.get(0).getCause().getMessage().startsWith("Slow down."), is(true));
+        assertThat(failures.get(10).getKey(), is("logs/0025"));
+        assertThat(failures.get(10).getCode(), is("AccessDenied"));
+        assertThat(client.contains("logs/0010"), is(true));
+        assertThat(client.contains("logs/0025"), is(true));
+        assertThat(client.contains("logs/0024"), is(false));
+    }
+
+    @Test
+    public void testSplitsBatchesByBucket() {
+        AtomicInteger calls = new AtomicInteger();
+        StubS3Client anyBucket = new StubS3Client() {
+            @Override
+            public DeleteObjectsResult deleteObjects(final DeleteObjectsRequest request) {
+                calls.incrementAndGet();
+                return new DeleteObjectsResult(Collections.emptyList());
+            }
+        };
+        S3ObjectSummary elsewhere = summary("logs/x");
+        elsewhere.setBucketName("other-bucket");
+
+        FanInResult<Integer> result = new Deletion.Builder()
+                .summaries(Stream.of(summary("logs/a"), summary("logs/b"), elsewhere, summary("logs/c")))
+                .client(anyBucket).executor(SAME_THREAD).build().start().join();
+
+        assertThat(result.getSuccessful(), is(Arrays.asList(2, 1, 1)));
+        assertThat(calls.get(), is(3));
+    }
+
+    @Test
+    public void testFailedListingFailsDeletion() {
+        Stream<S3ObjectSummary> failing = Stream.of(summary("logs/a"), null).map(summary -> {
+            if (summary == null) {
+                throw new IllegalStateException("Listing failed.");
+            }
+            return summary;
+        });
+
+        try {
+            new Deletion.Builder().summaries(failing).client(client).batchSize(1).executor(SAME_THREAD).build()
+                                  .start().join();
+            fail("Deletion should have failed.");
+        } catch (final CompletionException e) {
+            assertThat(e.getCause().getMessage(), is("Listing failed."));
+        }
+    }
+
+    private void putKeys(final String prefix, final int count) {
+        IntStream.range(0, count).forEach(i -> client.put(String.format("%s%04d", prefix, i), "x", new Date()));
+    }
+
+    private Stream<S3ObjectSummary> summaries(final String prefix, final int count) {
+        putKeys(prefix, count);
+        return IntStream.range(0, count).mapToObj(i -> summary(String.format("%s%04d", prefix, i)));
+    }
+
+    private static S3ObjectSummary summary(final String key) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(BUCKET);
+        summary.setKey(key);
+        return summary;
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.vosmann.miniutils.s3.StubS3Client.BUCKET;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+
+public class ListerTest {
+
+    private static final Executor SAME_THREAD = Runnable::run;
+
+    private final StubS3Client client = new StubS3Client(10);
+    private final Lister lister = new Lister(client, SAME_THREAD);
+
+    @Test
+    public void testStreamFollowsAllPages() {
+        putKeys("logs/", 35);
+        client.put("other/1", "x", new Date());
+
+        List<String> keys = lister.stream(Address.of(BUCKET, "logs/")).map(S3ObjectSummary::getKey).collect(toList());
+
+        assertThat(keys, is(IntStream.range(0, 35).mapToObj(i -> String.format("logs/%03d", i)).collect(toList())));
+        assertThat(client.getListCalls(), is(4));
+    }
+
+    @Test
+    public void testStreamIsLazy() {
+        putKeys("logs/", 100);
+
+        try (Stream<S3ObjectSummary> summaries = new Lister(client).stream(Address.of(BUCKET, "logs/"))) {
+            assertThat(client.getListCalls(), is(0));
+            assertThat(summaries.limit(5).count(), is(5L));
+        }
+
+        assertThat(client.getListCalls(), lessThanOrEqualTo(3));
+    }
+
+    @Test
+    public void testAtListsMoreThanOnePage() {
+        putKeys("logs/", 25);
+
+        Listing listing = lister.at(Address.of(BUCKET, "logs/"));
+
+        assertThat(listing.get(), hasSize(25));
+        assertThat(listing.getErrorMessage().isPresent(), is(false));
+    }
+
+    @Test
+    public void testFollowsLastKeyWithoutNextMarker() {
+        putKeys("logs/", 15);
+        StubS3Client withoutNextMarker = new StubS3Client(10) {
+            @Override
+            public ObjectListing listObjects(final ListObjectsRequest request) {
+                ObjectListing listing = ListerTest.this.client.listObjects(request);
+                listing.setNextMarker(null);
+                return listing;
+            }
+        };
+
+        assertThat(new Lister(withoutNextMarker, SAME_THREAD).at(Address.of(BUCKET, "logs/")).get(), hasSize(15));
+    }
+
+    @Test
+    public void testFailedPage() {
+        putKeys("logs/", 15);
+        StubS3Client failingSecondPage = new StubS3Client(10) {
+            @Override
+            public ObjectListing listObjects(final ListObjectsRequest request) {
+                if (request.getMarker() != null) {
+                    throw new IllegalStateException("Second page failed.");
+                }
+                return ListerTest.this.client.listObjects(request);
+            }
+        };
+        Lister failingLister = new Lister(failingSecondPage, SAME_THREAD);
+
+        try {
+            failingLister.stream(Address.of(BUCKET, "logs/")).count();
+            fail("Listing should have failed.");
+        } catch (CompletionException e) {
+            assertThat(e.getCause().getMessage(), is("Second page failed."));
+        }
+        assertThat(failingLister.at(Address.of(BUCKET, "logs/")).getErrorMessage().isPresent(), is(true));
+    }
+
+    private void putKeys(final String prefix, final int count) {
+        IntStream.range(0, count).forEach(i -> client.put(String.format("%s%03d", prefix, i), "x", new Date()));
+    }
+
+}
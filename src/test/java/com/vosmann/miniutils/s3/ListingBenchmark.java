@@ -0,0 +1,135 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.model.Owner;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selecting the objects of a listing last modified in a time range: the linear scan over S3ObjectSummary instances
+ * that Listing used to do, and the binary search in its columns' time index. Both scan and index walk the selected
+ * summaries in key order; select only finds them, without decoding any. The main method prints the heap that each
+ * way of holding the listing retains.
+ * <p>
+ * Run with: mvn -Pjmh clean test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ * &amp;&amp; java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main ListingBenchmark
+ * <br>
+ * and: java -cp target/test-classes:target/classes:$(cat cp.txt) com.vosmann.miniutils.s3.ListingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class ListingBenchmark {
+
+    private static final Address ADDRESS = Address.of("bucket", "logs/");
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int DAYS = 50;
+
+    @Param({"1000000"})
+    private int size;
+
+    private List<S3ObjectSummary> summaries;
+    private Listing listing;
+    private Instant begin;
+    private Instant end;
+
+    @Setup
+    public void list() {
+        summaries = summaries(size);
+        listing = new Listing(ADDRESS, summaries.iterator());
+        // One day out of fifty, about 2% of the keys.
+        begin = Instant.ofEpochMilli(20 * DAY_MILLIS);
+        end = Instant.ofEpochMilli(21 * DAY_MILLIS);
+        listing.between(begin, end); // Builds the time index, which is a one-off cost per listing.
+    }
+
+    @Benchmark
+    public void scan(final Blackhole blackhole) {
+        final Date after = Date.from(begin);
+        final Date before = Date.from(end);
+        for (final S3ObjectSummary summary : summaries) {
+            final Date lastModified = summary.getLastModified();
+            if (lastModified != null && lastModified.after(after) && lastModified.before(before)) {
+                blackhole.consume(summary);
+            }
+        }
+    }
+
+    @Benchmark
+    public int select() {
+        return listing.between(begin, end).get().size();
+    }
+
+    @Benchmark
+    public void index(final Blackhole blackhole) {
+        for (final S3ObjectSummary summary : listing.between(begin, end).get()) {
+            blackhole.consume(summary);
+        }
+    }
+
+    public static void main(final String[] args) {
+        final int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        final long base = usedHeap();
+        List<S3ObjectSummary> summaries = summaries(size);
+        final long asSummaries = usedHeap() - base;
+
+        final Listing listing = new Listing(ADDRESS, summaries.iterator());
+        listing.between(Instant.MIN, Instant.MAX);
+        summaries = null;
+        final long asColumns = usedHeap() - base;
+
+        System.out.printf("%d summaries: %dMB as S3ObjectSummary instances, %dMB as a listing with its time index%n",
+                          listing.get().size(), asSummaries >> 20, asColumns >> 20);
+    }
+
+    /**
+     * Keys as a date partitioned log would have them, with random modification times over fifty days.
+     */
+    private static List<S3ObjectSummary> summaries(final int size) {
+        final Random random = new Random(42);
+        final Owner owner = new Owner("75aa57f09aa0c8caeab4f8c24e99d10f8e7faeebf76c078efc7c6caea54ba06a", "logs");
+        final List<S3ObjectSummary> summaries = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            final S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setBucketName(ADDRESS.getBucket());
+            summary.setKey(String.format("logs/2015/05/%02d/part-%07d.gz", i * DAYS / size, i));
+            summary.setSize(random.nextInt(1 << 30));
+            summary.setETag(String.format("%016x%016x", random.nextLong(), random.nextLong()));
+            summary.setLastModified(new Date((long) (random.nextDouble() * DAYS * DAY_MILLIS)));
+            summary.setStorageClass("STANDARD");
+            summary.setOwner(owner);
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static com.vosmann.miniutils.s3.StubS3Client.BUCKET;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ListingSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWrittenSnapshotLoadsBack() throws IOException {
+        Path file = folder.newFile().toPath();
+        ListingSnapshot.write(Arrays.asList(summary("a/1", 10, "e1", new Date(1000)),
+                                            summary("a/2", 20, null, null),
+                                            summary("a/\u00fc", 30, "e3", new Date(3000))).iterator(), file);
+
+        ListingSnapshot snapshot = ListingSnapshot.load(BUCKET, file);
+
+        assertThat(snapshot.size(), is(3));
+        assertThat(snapshot.getKey(2), is("a/\u00fc"));
+        assertThat(snapshot.getSize(1), is(20L));
+        assertThat(snapshot.getETag(1), is(nullValue()));
+        assertThat(snapshot.getLastModified(1), is(nullValue()));
+        S3ObjectSummary first = snapshot.get(0);
+        assertThat(first.getBucketName(), is(BUCKET));
+        assertThat(first.getETag(), is("e1"));
+        assertThat(first.getLastModified(), is(new Date(1000)));
+        assertThat(snapshot.stream().map(S3ObjectSummary::getKey).collect(toList()),
+                   is(Arrays.asList("a/1", "a/2", "a/\u00fc")));
+    }
+
+    @Test
+    public void testIndexOf() throws IOException {
+        Path file = folder.newFile().toPath();
+        List<S3ObjectSummary> summaries = Arrays.asList(summary("b", 1, "e", null), summary("d", 1, "e", null),
+                                                        summary("f", 1, "e", null));
+        ListingSnapshot.write(summaries.iterator(), file);
+        ListingSnapshot snapshot = ListingSnapshot.load(BUCKET, file);
+
+        assertThat(snapshot.indexOf("d"), is(1));
+        assertThat(snapshot.indexOf("a"), is(-1));
+        assertThat(snapshot.indexOf("e"), is(-3));
+        assertThat(snapshot.indexOf("g"), is(-4));
+        assertThat(ListingSnapshot.empty(BUCKET).indexOf("a"), is(-1));
+    }
+
+    @Test
+    public void testWriteLeavesOnlyTheSnapshot() throws IOException {
+        Path file = folder.newFile().toPath();
+
+        ListingSnapshot.write(Arrays.asList(summary("a", 1, "e", null)).iterator(), file);
+
+        assertThat(folder.getRoot().list(), is(new String[] {file.getFileName().toString()}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsortedSummariesAreRejected() throws IOException {
+        ListingSnapshot.write(Arrays.asList(summary("b", 1, "e", null), summary("a", 1, "e", null)).iterator(),
+                              folder.newFile().toPath());
+    }
+
+    @Test
+    public void testKeysCompareInCodePointOrder() {
+        String privateUse = "\ue000";
+        String supplementary = new String(Character.toChars(0x1F600));
+
+        assertThat(privateUse.compareTo(supplementary) > 0, is(true));
+        assertThat(ListingSnapshot.compareKeys(privateUse, supplementary), lessThan(0));
+        assertThat(ListingSnapshot.compareKeys("a", "ab"), lessThan(0));
+        assertThat(ListingSnapshot.compareKeys("ab", "ab"), is(0));
+    }
+
+    static S3ObjectSummary summary(final String key, final long size, final String eTag, final Date lastModified) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(BUCKET);
+        summary.setKey(key);
+        summary.setSize(size);
+        summary.setETag(eTag);
+        summary.setLastModified(lastModified);
+        return summary;
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.model.Owner;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static com.vosmann.miniutils.s3.StubS3Client.BUCKET;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ListingTest {
+
+    private static final Address ADDRESS = Address.of(BUCKET, "logs/");
+
+    @Test
+    public void testSummariesRoundTrip() {
+        List<S3ObjectSummary> summaries = new ArrayList<>();
+        for (int i = 0; i < 40; ++i) {
+            summaries.add(summary(String.format("logs/2015/05/%02d/part-%05d.gz", i / 10, i), 1000L * i,
+                                  String.format("%032x", i), "STANDARD"));
+        }
+        summaries.add(summary("logs/multipart", 7, "0123456789abcdef0123456789abcdef-12", "GLACIER"));
+        summaries.add(summary("logs/odd", 8, "\"Not-A-Digest\"", null));
+        summaries.add(summary("logs/upper", 9, "0123456789ABCDEF0123456789ABCDEF", "STANDARD"));
+        summaries.add(summary("logs/\u00fcber", 10, null, "STANDARD"));
+        summaries.get(0).setOwner(new Owner("id-a", "Alice"));
+        summaries.get(1).setOwner(new Owner("id-b", null));
+        summaries.get(2).setOwner(new Owner("id-a", "Alice"));
+        S3ObjectSummary undated = summary("logs/undated", 11, "00000000000000000000000000000000-0", "STANDARD");
+        undated.setLastModified(null);
+        summaries.add(undated);
+
+        List<S3ObjectSummary> stored = new Listing(ADDRESS, summaries).get();
+
+        assertThat(stored.size(), is(summaries.size()));
+        for (int i = 0; i < summaries.size(); ++i) {
+            S3ObjectSummary expected = summaries.get(i);
+            S3ObjectSummary actual = stored.get(i);
+            assertThat(actual.getBucketName(), is(BUCKET));
+            assertThat(actual.getKey(), is(expected.getKey()));
+            assertThat(actual.getSize(), is(expected.getSize()));
+            assertThat(actual.getETag(), is(expected.getETag()));
+            assertThat(actual.getLastModified(), is(expected.getLastModified()));
+            assertThat(actual.getStorageClass(), is(expected.getStorageClass()));
+            assertThat(actual.getOwner(), is(expected.getOwner()));
+        }
+        assertThat(stored.get(0).getOwner(), is(not(sameInstance(summaries.get(0).getOwner()))));
+    }
+
+    @Test
+    public void testBetweenExcludesBounds() {
+        Listing listing = new Listing(ADDRESS, Arrays.asList(dated("logs/a", 3000), dated("logs/b", 1000),
+                                                             dated("logs/c", 2000), dated("logs/d", 4000),
+                                                             dated("logs/e", 2000)));
+
+        assertThat(keys(listing.between(Instant.ofEpochMilli(1000), Instant.ofEpochMilli(4000))),
+                   is(Arrays.asList("logs/a", "logs/c", "logs/e")));
+        assertThat(keys(listing.between(Instant.ofEpochMilli(1999), Instant.ofEpochMilli(2001))),
+                   is(Arrays.asList("logs/c", "logs/e")));
+        assertThat(keys(listing.between(Instant.ofEpochMilli(2000), Instant.ofEpochMilli(3000))), is(empty()));
+        assertThat(keys(listing.after(Instant.ofEpochMilli(2000))), is(Arrays.asList("logs/a", "logs/d")));
+        assertThat(keys(listing.before(Instant.ofEpochMilli(2000))), is(Arrays.asList("logs/b")));
+    }
+
+    @Test
+    public void testBetweenRoundsSubMillisecondBounds() {
+        Listing listing = new Listing(ADDRESS, Arrays.asList(dated("logs/a", 1000), dated("logs/b", 2000)));
+
+        Instant justBefore = Instant.ofEpochMilli(1000).minusNanos(1);
+        Instant justAfter = Instant.ofEpochMilli(2000).plusNanos(1);
+
+        assertThat(keys(listing.between(justBefore, justAfter)), is(Arrays.asList("logs/a", "logs/b")));
+        assertThat(keys(listing.between(justBefore.plusNanos(2), justAfter.minusNanos(2))), is(empty()));
+    }
+
+    @Test
+    public void testUnboundedRanges() {
+        S3ObjectSummary undated = dated("logs/undated", 0);
+        undated.setLastModified(null);
+        Listing listing = new Listing(ADDRESS, Arrays.asList(dated("logs/a", -5000), dated("logs/b", 5000),
+                                                             undated));
+
+        assertThat(keys(listing.between(Instant.MIN, Instant.MAX)), is(Arrays.asList("logs/a", "logs/b")));
+        assertThat(keys(listing.before(Instant.MIN)), is(empty()));
+        assertThat(keys(listing.after(Instant.MAX)), is(empty()));
+    }
+
+    @Test
+    public void testRangesOfRanges() {
+        List<S3ObjectSummary> summaries = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            summaries.add(dated(String.format("logs/%03d", i), (i * 37) % 100));
+        }
+        Listing listing = new Listing(ADDRESS, summaries);
+
+        Listing range = listing.after(Instant.ofEpochMilli(9)).before(Instant.ofEpochMilli(20));
+
+        assertThat(keys(range), is(Arrays.asList("logs/003", "logs/014", "logs/022", "logs/030", "logs/041",
+                                                 "logs/049", "logs/068", "logs/076", "logs/087", "logs/095")));
+        assertThat(range.get().stream().map(s -> s.getLastModified().getTime()).collect(toList()),
+                   is(Arrays.asList(11L, 18L, 14L, 10L, 17L, 13L, 16L, 12L, 19L, 15L)));
+        assertThat(keys(range.between(Instant.ofEpochMilli(14), Instant.ofEpochMilli(18))),
+                   is(Arrays.asList("logs/041", "logs/068", "logs/095")));
+    }
+
+    @Test
+    public void testFailedListing() {
+        Listing listing = new Listing(ADDRESS, "Listing failed.");
+
+        assertThat(listing.get(), is(empty()));
+        assertThat(listing.getErrorMessage().get(), is("Listing failed."));
+        assertThat(listing.after(Instant.MIN).get(), is(empty()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSummariesAreUnmodifiable() {
+        new Listing(ADDRESS, Arrays.asList(dated("logs/a", 0))).get().remove(0);
+    }
+
+    @Test
+    public void testToString() {
+        Listing listing = new Listing(ADDRESS, Arrays.asList(dated("logs/a", 0), dated("logs/b", 0)));
+
+        assertThat(listing.toString(), is("Listing{address=" + ADDRESS + ", keys=logs/a,logs/b}"));
+        assertThat(listing.get().get(0).getETag(), is(nullValue()));
+    }
+
+    private static S3ObjectSummary summary(final String key, final long size, final String eTag,
+                                           final String storageClass) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(BUCKET);
+        summary.setKey(key);
+        summary.setSize(size);
+        summary.setETag(eTag);
+        summary.setStorageClass(storageClass);
+        summary.setLastModified(new Date(1431000000000L + size));
+        return summary;
+    }
+
+    private static S3ObjectSummary dated(final String key, final long lastModified) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(BUCKET);
+        summary.setKey(key);
+        summary.setLastModified(new Date(lastModified));
+        return summary;
+    }
+
+    private static List<String> keys(final Listing listing) {
+        return listing.get().stream().map(S3ObjectSummary::getKey).collect(toList());
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static com.vosmann.miniutils.s3.StubS3Client.BUCKET;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+
+public class ParallelListerTest {
+
+    private final StubS3Client client = new StubS3Client(10);
+
+    @Test
+    public void testListsCommonPrefixesAsShards() {
+        for (int dir = 0; dir < 5; ++dir) {
+            for (int i = 0; i < 37; ++i) {
+                put(String.format("logs/dir%d/%03d", dir, i));
+            }
+        }
+        IntStream.range(0, 3).forEach(i -> put("logs/root" + i));
+        put("other/1");
+
+        Listing listing = new ParallelLister(client, 4).at(Address.of(BUCKET, "logs/"));
+
+        assertThat(keys(listing), is(keys(new Lister(client).at(Address.of(BUCKET, "logs/")))));
+        assertThat(listing.get(), hasSize(188));
+    }
+
+    @Test
+    public void testSplitsFlatKeySpace() {
+        IntStream.range(0, 500).forEach(i -> put(String.format("flat/%05d", i)));
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        StubS3Client recordingThreads = new StubS3Client(10) {
+            @Override
+            public ObjectListing listObjects(final ListObjectsRequest request) {
+                threads.add(Thread.currentThread().getName());
+                sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+                return ParallelListerTest.this.client.listObjects(request);
+            }
+        };
+
+        Listing listing = new ParallelLister(recordingThreads, 4).at(Address.of(BUCKET, "flat/"));
+
+        assertThat(listing.get(), hasSize(500));
+        assertThat(keys(listing), is(IntStream.range(0, 500).mapToObj(i -> String.format("flat/%05d", i))
+                                              .collect(toList())));
+        assertThat(threads.size(), greaterThan(1));
+    }
+
+    @Test
+    public void testMatchesSequentialListingOfRandomKeys() {
+        Random random = new Random(42);
+        String alphabet = "ab/09Z-";
+        for (int i = 0; i < 2000; ++i) {
+            StringBuilder key = new StringBuilder("r/");
+            int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; ++j) {
+                key.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            put(key.toString());
+        }
+
+        Listing parallel = new ParallelLister(client, 8).at(Address.of(BUCKET, "r/"));
+
+        assertThat(keys(parallel), is(keys(new Lister(client).at(Address.of(BUCKET, "r/")))));
+    }
+
+    @Test
+    public void testFailedListing() {
+        StubS3Client failing = new StubS3Client(10) {
+            @Override
+            public ObjectListing listObjects(final ListObjectsRequest request) {
+                throw new IllegalStateException("Listing failed.");
+            }
+        };
+
+        Listing listing = new ParallelLister(failing, 4).at(Address.of(BUCKET, "logs/"));
+
+        assertThat(listing.getErrorMessage().isPresent(), is(true));
+    }
+
+    @Test
+    public void testMidpoint() {
+        assertThat(ParallelLister.midpoint("p/", "p/a", "p/c"), is("p/b"));
+        assertThat(ParallelLister.midpoint("p/", "p/a", "p/a"), is(nullValue()));
+
+        String tight = ParallelLister.midpoint("p/", "p/a", "p/b");
+        assertThat(tight.compareTo("p/a"), greaterThan(0));
+        assertThat(tight.compareTo("p/b"), lessThan(0));
+
+        String open = ParallelLister.midpoint("p/", "p/00042", null);
+        assertThat(open, startsWith("p/"));
+        assertThat(open.compareTo("p/00042"), greaterThan(0));
+    }
+
+    private void put(final String key) {
+        client.put(key, "x", new Date());
+    }
+
+    private static List<String> keys(final Listing listing) {
+        return listing.get().stream().map(S3ObjectSummary::getKey).collect(toList());
+    }
+
+}
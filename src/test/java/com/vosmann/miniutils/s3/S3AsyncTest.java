@@ -0,0 +1,85 @@
+package com.vosmann.miniutils.s3;
+
+import com.vosmann.miniutils.Data;
+import com.vosmann.miniutils.futures.FanIn;
+import com.vosmann.miniutils.futures.FanInResult;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+import static com.vosmann.miniutils.s3.StubS3Client.BUCKET;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class S3AsyncTest {
+
+    private final StubS3Client client = new StubS3Client();
+    private final S3Async s3 = new S3Async(client);
+
+    @Test
+    public void testUploadAndDownload() {
+        Data data = Data.from("hello there");
+
+        s3.upload(Address.of(BUCKET, "greeting"), data.getSize(), data.toInputStream()).join();
+        Optional<String> downloaded = s3.download(Address.of(BUCKET, "greeting"), data.getSize()).join();
+
+        assertThat(downloaded, is(Optional.of("hello there")));
+    }
+
+    @Test
+    public void testFailedDownloadFailsFuture() {
+        try {
+            s3.download(Address.of(BUCKET, "missing"), 10).join();
+            fail("Download should have failed.");
+        } catch (CompletionException e) {
+            assertThat(e.getCause().getMessage().contains("missing"), is(true));
+        }
+    }
+
+    @Test
+    public void testListAndDelete() {
+        client.put("logs/1", "a", new Date());
+        client.put("logs/2", "b", new Date());
+
+        Listing listing = s3.list(Address.of(BUCKET, "logs/")).join();
+        FanInResult<Integer> deleted = s3.delete(listing).join();
+
+        assertThat(listing.get(), hasSize(2));
+        assertThat(deleted.getSuccessful(), is(Collections.singletonList(2)));
+        assertThat(client.contains("logs/1"), is(false));
+    }
+
+    @Test
+    public void testDeleteAllWhileListing() {
+        IntStream.range(0, 2500).forEach(i -> client.put("logs/" + i, "x", new Date()));
+        client.put("other/1", "x", new Date());
+
+        FanInResult<Integer> deleted = s3.deleteAll(Address.of(BUCKET, "logs/")).join();
+
+        assertThat(deleted.getSuccessful().stream().mapToInt(Integer::intValue).sum(), is(2500));
+        assertThat(deleted.hasThrowables(), is(false));
+        assertThat(client.contains("logs/2499"), is(false));
+        assertThat(client.contains("other/1"), is(true));
+    }
+
+    @Test
+    public void testFanInOverManyDownloads() {
+        IntStream.range(0, 100).forEach(i -> client.put("key-" + i, "value-" + i, new Date()));
+
+        FanInResult<Optional<String>> result = IntStream.range(0, 101)
+                                                        .mapToObj(i -> s3.download(Address.of(BUCKET, "key-" + i), 20))
+                                                        .collect(FanIn.FanInCollector.toFanIn())
+                                                        .get();
+
+        assertThat(result.getSuccessful(), hasSize(100));
+        assertThat(result.getThrowables(), hasSize(1));
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static com.vosmann.miniutils.s3.StubS3Client.BUCKET;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class SnapshotStoreTest {
+
+    private static final Executor SAME_THREAD = Runnable::run;
+    private static final Address SHARD = Address.of(BUCKET, "logs/");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final StubS3Client client = new StubS3Client(2);
+
+    @Test
+    public void testFirstRefreshAddsEverything() throws Exception {
+        client.put("logs/1", "a", new Date(1000));
+        client.put("logs/2", "b", new Date(2000));
+        client.put("other/1", "c", new Date(3000));
+        SnapshotStore store = new SnapshotStore(folder.getRoot().toPath(), new Lister(client, SAME_THREAD));
+
+        ListingDiff diff = store.refresh(SHARD);
+
+        assertThat(keys(diff.getAdded()), is(Arrays.asList("logs/1", "logs/2")));
+        assertThat(diff.getRemoved(), is(empty()));
+        assertThat(diff.getModified(), is(empty()));
+    }
+
+    @Test
+    public void testRefreshDiffsAgainstPreviousSnapshot() throws Exception {
+        client.put("logs/1", "a", new Date(1000));
+        client.put("logs/2", "b", new Date(2000));
+        client.put("logs/3", "c", new Date(3000));
+        client.put("logs/4", "d", new Date(4000));
+        SnapshotStore store = new SnapshotStore(folder.getRoot().toPath(), new Lister(client, SAME_THREAD));
+        store.refresh(SHARD);
+
+        client.deleteObject(BUCKET, "logs/1");
+        client.put("logs/2", "changed", new Date(5000));
+        client.put("logs/25", "new", new Date(5000));
+        client.deleteObject(BUCKET, "logs/4");
+        client.put("logs/5", "new", new Date(5000));
+        ListingDiff diff = store.refresh(SHARD);
+
+        assertThat(keys(diff.getAdded()), is(Arrays.asList("logs/25", "logs/5")));
+        assertThat(keys(diff.getRemoved()), is(Arrays.asList("logs/1", "logs/4")));
+        assertThat(keys(diff.getModified()), is(Arrays.asList("logs/2")));
+        assertThat(diff.getRemoved().get(0).getLastModified(), is(new Date(1000)));
+        assertThat(diff.getModified().get(0).getSize(), is(7L));
+        assertThat(store.refresh(SHARD).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testSnapshotSurvivesRestart() throws Exception {
+        client.put("logs/1", "a", new Date(1000));
+        client.put("logs/2", "b", new Date(2000));
+        new SnapshotStore(folder.getRoot().toPath(), new Lister(client, SAME_THREAD)).refresh(SHARD);
+        int listCalls = client.getListCalls();
+
+        SnapshotStore restarted = new SnapshotStore(folder.getRoot().toPath(), new Lister(client, SAME_THREAD));
+        ListingSnapshot snapshot = restarted.load(SHARD);
+
+        assertThat(client.getListCalls(), is(listCalls));
+        assertThat(keys(snapshot.stream().collect(toList())), is(Arrays.asList("logs/1", "logs/2")));
+        assertThat(snapshot.getLastModified(1), is(new Date(2000)));
+        assertThat(restarted.load(Address.of(BUCKET, "other/")).size(), is(0));
+    }
+
+    @Test
+    public void testFailedRefreshKeepsPreviousSnapshot() throws Exception {
+        client.put("logs/1", "a", new Date(1000));
+        client.put("logs/2", "b", new Date(2000));
+        client.put("logs/3", "c", new Date(3000));
+        new SnapshotStore(folder.getRoot().toPath(), new Lister(client, SAME_THREAD)).refresh(SHARD);
+        StubS3Client failing = new StubS3Client(2) {
+            @Override
+            public ObjectListing listObjects(final ListObjectsRequest request) {
+                if (request.getMarker() != null) {
+                    throw new IllegalStateException("Second page failed.");
+                }
+                return SnapshotStoreTest.this.client.listObjects(request);
+            }
+        };
+        SnapshotStore store = new SnapshotStore(folder.getRoot().toPath(), new Lister(failing, SAME_THREAD));
+
+        try {
+            store.refresh(SHARD);
+            fail("Refresh should have failed.");
+        } catch (final CompletionException e) {
+            assertThat(store.load(SHARD).size(), is(3));
+        }
+        assertThat(folder.getRoot().list().length, is(1));
+    }
+
+    private static List<String> keys(final List<S3ObjectSummary> summaries) {
+        return summaries.stream().map(S3ObjectSummary::getKey).collect(toList());
+    }
+
+}
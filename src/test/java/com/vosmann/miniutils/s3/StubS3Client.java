@@ -0,0 +1,186 @@
+package com.vosmann.miniutils.s3;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory S3 with a single bucket, for testing without AWS. Lists in pages of at most pageSize keys.
+ */
+class StubS3Client extends AmazonS3Client {
+
+    static final String BUCKET = "stub-bucket";
+
+    private final NavigableMap<String, byte[]> objects = new ConcurrentSkipListMap<>();
+    private final Map<String, Date> lastModified = new ConcurrentSkipListMap<>();
+    private final AtomicInteger listCalls = new AtomicInteger();
+    private final AtomicInteger deleteObjectsCalls = new AtomicInteger();
+    private final int pageSize;
+
+    StubS3Client() {
+        this(1000);
+    }
+
+    StubS3Client(final int pageSize) {
+        super(new BasicAWSCredentials("stub", "stub"));
+        this.pageSize = pageSize;
+    }
+
+    void put(final String key, final String content, final Date modified) {
+        objects.put(key, content.getBytes());
+        lastModified.put(key, modified);
+    }
+
+    boolean contains(final String key) {
+        return objects.containsKey(key);
+    }
+
+    int getListCalls() {
+        return listCalls.get();
+    }
+
+    int getDeleteObjectsCalls() {
+        return deleteObjectsCalls.get();
+    }
+
+    @Override
+    public PutObjectResult putObject(final String bucket, final String key, final InputStream input,
+                                     final ObjectMetadata metadata) {
+        checkBucket(bucket);
+        try {
+            objects.put(key, ByteStreams.toByteArray(input));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lastModified.put(key, new Date());
+        return new PutObjectResult();
+    }
+
+    @Override
+    public S3Object getObject(final String bucket, final String key) {
+        checkBucket(bucket);
+        final byte[] content = objects.get(key);
+        if (content == null) {
+            throw notFound(key);
+        }
+        final S3Object object = new S3Object();
+        object.setBucketName(bucket);
+        object.setKey(key);
+        object.getObjectMetadata().setContentLength(content.length);
+        object.setObjectContent(new ByteArrayInputStream(content));
+        return object;
+    }
+
+    @Override
+    public void deleteObject(final String bucket, final String key) {
+        checkBucket(bucket);
+        objects.remove(key);
+        lastModified.remove(key);
+    }
+
+    @Override
+    public DeleteObjectsResult deleteObjects(final DeleteObjectsRequest request) {
+        checkBucket(request.getBucketName());
+        deleteObjectsCalls.incrementAndGet();
+        final List<DeleteObjectsResult.DeletedObject> deleted = new ArrayList<>();
+        for (final DeleteObjectsRequest.KeyVersion key : request.getKeys()) {
+            deleteObject(request.getBucketName(), key.getKey());
+            if (!request.getQuiet()) {
+                final DeleteObjectsResult.DeletedObject deletedObject = new DeleteObjectsResult.DeletedObject();
+                deletedObject.setKey(key.getKey());
+                deleted.add(deletedObject);
+            }
+        }
+        return new DeleteObjectsResult(deleted);
+    }
+
+    @Override
+    public ObjectListing listObjects(final ListObjectsRequest request) {
+        checkBucket(request.getBucketName());
+        listCalls.incrementAndGet();
+        final String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+        final int maxKeys = request.getMaxKeys() == null ? pageSize : Math.min(pageSize, request.getMaxKeys());
+        final ObjectListing listing = new ObjectListing();
+        listing.setBucketName(request.getBucketName());
+        listing.setPrefix(request.getPrefix());
+        listing.setMarker(request.getMarker());
+        listing.setDelimiter(request.getDelimiter());
+        listing.setMaxKeys(maxKeys);
+
+        final NavigableMap<String, byte[]> after = request.getMarker() == null
+                ? objects.tailMap(prefix, true) : objects.tailMap(request.getMarker(), false);
+        String last = null;
+        int count = 0;
+        for (final Map.Entry<String, byte[]> entry : after.entrySet()) {
+            final String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            if (count == maxKeys) {
+                listing.setTruncated(true);
+                listing.setNextMarker(last);
+                break;
+            }
+            final int delimiterAt = request.getDelimiter() == null
+                    ? -1 : key.indexOf(request.getDelimiter(), prefix.length());
+            if (delimiterAt >= 0) {
+                final String commonPrefix = key.substring(0, delimiterAt + request.getDelimiter().length());
+                if (!listing.getCommonPrefixes().contains(commonPrefix)) {
+                    listing.getCommonPrefixes().add(commonPrefix);
+                    ++count;
+                }
+                last = commonPrefix;
+            } else {
+                listing.getObjectSummaries().add(summary(key, entry.getValue()));
+                ++count;
+                last = key;
+            }
+        }
+        return listing;
+    }
+
+    private S3ObjectSummary summary(final String key, final byte[] content) {
+        final S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(BUCKET);
+        summary.setKey(key);
+        summary.setSize(content.length);
+        summary.setETag(Integer.toHexString(Arrays.hashCode(content)));
+        summary.setLastModified(lastModified.get(key));
+        return summary;
+    }
+
+    private static void checkBucket(final String bucket) {
+        if (!BUCKET.equals(bucket)) {
+            throw notFound(bucket);
+        }
+    }
+
+    private static AmazonServiceException notFound(final String name) {
+        final AmazonServiceException e = new AmazonServiceException("Not found: " + name);
+        e.setStatusCode(404);
+        return e;
+    }
+
+}